@@ -0,0 +1,83 @@
+package br.com.alura.forum.carga;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+    Parâmetros do teste de carga, passados como argumentos chave=valor (por exemplo "taxa=500 duracao=60").
+    Tudo tem um valor padrão, então o teste roda sem nenhum argumento.
+ */
+class ConfiguracaoDaCarga {
+
+    int cursos = 10;
+    int usuarios = 200;
+    int topicos = 10000;
+    int respostasPorTopico = 5;
+    int taxa = 200; // requisições por segundo
+    int duracao = 30; // segundos
+    int aquecimento = 5; // segundos, descartados do resultado
+    int threads = 32;
+    String saida = "target/carga";
+    Map<Endpoint, Integer> mix = new EnumMap<>(Endpoint.class);
+
+    ConfiguracaoDaCarga() {
+        mix.put(Endpoint.LISTA, 50);
+        mix.put(Endpoint.DETALHE, 35);
+        mix.put(Endpoint.CADASTRO, 5);
+        mix.put(Endpoint.ATUALIZACAO, 5);
+        mix.put(Endpoint.REMOCAO, 5);
+        mix.put(Endpoint.REMOCAO_CONDICIONAL, 5);
+    }
+
+    static ConfiguracaoDaCarga de(String[] args) {
+        ConfiguracaoDaCarga configuracao = new ConfiguracaoDaCarga();
+        for (String arg : args) {
+            int igual = arg.indexOf('=');
+            if (igual < 0) {
+                throw new IllegalArgumentException("Argumento invalido, use chave=valor: " + arg);
+            }
+            String chave = arg.substring(0, igual);
+            String valor = arg.substring(igual + 1);
+            switch (chave) {
+                case "cursos": configuracao.cursos = Integer.parseInt(valor); break;
+                case "usuarios": configuracao.usuarios = Integer.parseInt(valor); break;
+                case "topicos": configuracao.topicos = Integer.parseInt(valor); break;
+                case "respostasPorTopico": configuracao.respostasPorTopico = Integer.parseInt(valor); break;
+                case "taxa": configuracao.taxa = Integer.parseInt(valor); break;
+                case "duracao": configuracao.duracao = Integer.parseInt(valor); break;
+                case "aquecimento": configuracao.aquecimento = Integer.parseInt(valor); break;
+                case "threads": configuracao.threads = Integer.parseInt(valor); break;
+                case "saida": configuracao.saida = valor; break;
+                case "mix": configuracao.mix = mix(valor); break;
+                default: throw new IllegalArgumentException("Parametro desconhecido: " + chave);
+            }
+        }
+        return configuracao;
+    }
+
+    // formato: lista=50,detalhe=35,cadastro=5,atualizacao=5,remocao=5,remocao_condicional=5 (pesos, não precisam
+    // somar 100)
+    private static Map<Endpoint, Integer> mix(String valor) {
+        Map<Endpoint, Integer> mix = new EnumMap<>(Endpoint.class);
+        for (String parte : valor.split(",")) {
+            String[] chaveValor = parte.split("=");
+            mix.put(Endpoint.valueOf(chaveValor[0].trim().toUpperCase()), Integer.parseInt(chaveValor[1].trim()));
+        }
+        return mix;
+    }
+
+    Map<String, Object> comoMapa() {
+        Map<String, Object> mapa = new LinkedHashMap<>();
+        mapa.put("cursos", cursos);
+        mapa.put("usuarios", usuarios);
+        mapa.put("topicos", topicos);
+        mapa.put("respostasPorTopico", respostasPorTopico);
+        mapa.put("taxa", taxa);
+        mapa.put("duracao", duracao);
+        mapa.put("aquecimento", aquecimento);
+        mapa.put("threads", threads);
+        mapa.put("mix", mix);
+        return mapa;
+    }
+}
@@ -0,0 +1,14 @@
+package br.com.alura.forum.carga;
+
+/*
+    Endpoints do TopicosController exercitados pelo teste de carga.
+ */
+enum Endpoint {
+    LISTA,
+    DETALHE,
+    CADASTRO,
+    ATUALIZACAO,
+    REMOCAO,
+    // DELETE com If-Match, o comando condicional do EscritaCondicionalService
+    REMOCAO_CONDICIONAL
+}
@@ -0,0 +1,316 @@
+package br.com.alura.forum.carga;
+
+import br.com.alura.forum.ForumApplication;
+import br.com.alura.forum.controller.form.TopicoForm;
+import br.com.alura.forum.service.CadastroEmLoteService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    Teste de carga sem ferramentas externas: sobe a aplicação com o H2 em memória numa porta aleatória, popula o banco
+    e dispara uma mistura de listagens, detalhes, cadastros, atualizações e remoções numa taxa fixa.
+
+    A carga e de modelo aberto: as requisições são agendadas em intervalos fixos, independente de as anteriores já
+    terem terminado, e a latência e medida a partir do horário em que a requisição deveria ter saido. Assim, quando a
+    aplicação não acompanha a taxa, a fila aparece na latência em vez de o teste simplesmente desacelerar.
+
+    No final imprime vazão e p50/p99/p999 por endpoint e grava tudo em JSON no diretório de saida, para comparar
+    execuções. Rodar com: ./mvnw -Pcarga -DskipTests verify -Dcarga.args="taxa=500 duracao=60"
+ */
+public class TesteDeCarga {
+
+    private static final long MAIOR_LATENCIA_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final ConfiguracaoDaCarga configuracao;
+    private final String baseUrl;
+    private final Map<Endpoint, Histogram> latencias = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, LongAdder> erros = new EnumMap<>(Endpoint.class);
+    private final ConcurrentLinkedQueue<Long> criadosPeloTeste = new ConcurrentLinkedQueue<>();
+    private final AtomicLong sequencia = new AtomicLong();
+    private final Endpoint[] sorteio;
+    private final long primeiroTopico;
+    private final long ultimoTopico;
+
+    private TesteDeCarga(ConfiguracaoDaCarga configuracao, int porta, long primeiroTopico, long ultimoTopico) {
+        this.configuracao = configuracao;
+        this.baseUrl = "http://localhost:" + porta;
+        this.primeiroTopico = primeiroTopico;
+        this.ultimoTopico = ultimoTopico;
+        for (Endpoint endpoint : Endpoint.values()) {
+            latencias.put(endpoint, new ConcurrentHistogram(MAIOR_LATENCIA_NANOS, 3));
+            erros.put(endpoint, new LongAdder());
+        }
+        // tabela de sorteio com cada endpoint repetido de acordo com o peso dele no mix
+        List<Endpoint> pesos = new ArrayList<>();
+        configuracao.mix.forEach((endpoint, peso) -> {
+            for (int i = 0; i < peso; i++) {
+                pesos.add(endpoint);
+            }
+        });
+        this.sorteio = pesos.toArray(new Endpoint[0]);
+    }
+
+    public static void main(String[] args) throws Exception {
+        ConfiguracaoDaCarga configuracao = ConfiguracaoDaCarga.de(args);
+        // o restart do devtools chamaria este main de novo numa outra thread, com os argumentos do Spring
+        System.setProperty("spring.devtools.restart.enabled", "false");
+
+        ServletWebServerApplicationContext contexto = (ServletWebServerApplicationContext) SpringApplication.run(
+                ForumApplication.class, "--server.port=0", "--logging.level.root=WARN",
+                // toda a carga sai de um unico cliente: sem isso o limite por cliente recusaria quase tudo
+                "--forum.admissao.taxa=1000000", "--forum.admissao.rajada=1000000");
+        try {
+            long[] faixa = popular(contexto, configuracao);
+            int porta = contexto.getWebServer().getPort();
+            TesteDeCarga teste = new TesteDeCarga(configuracao, porta, faixa[0], faixa[1]);
+            teste.executar();
+        } finally {
+            contexto.close();
+        }
+    }
+
+    /*
+        Cria cursos, usuários, tópicos e respostas e devolve o menor e o maior id de tópico criados.
+        Os tópicos passam pelo cadastro em lote da própria aplicação; o resto vai direto por JDBC.
+     */
+    private static long[] popular(ServletWebServerApplicationContext contexto, ConfiguracaoDaCarga configuracao) {
+        JdbcTemplate jdbc = contexto.getBean(JdbcTemplate.class);
+        CadastroEmLoteService cadastroEmLote = contexto.getBean(CadastroEmLoteService.class);
+        long inicio = System.currentTimeMillis();
+
+        for (int i = 1; i <= configuracao.cursos; i++) {
+            jdbc.update("insert into curso(nome, categoria) values (?, ?)", "Curso " + i, "Programacao");
+        }
+        for (int i = 1; i <= configuracao.usuarios; i++) {
+            jdbc.update("insert into usuario(nome, email, senha) values (?, ?, ?)",
+                    "Usuario " + i, "usuario" + i + "@email.com", "123456");
+        }
+
+        List<TopicoForm> lote = new ArrayList<>();
+        for (int i = 1; i <= configuracao.topicos; i++) {
+            lote.add(form("Topico de carga " + i, "Curso " + (1 + i % configuracao.cursos)));
+            if (lote.size() == 5000 || i == configuracao.topicos) {
+                cadastroEmLote.cadastrar(lote);
+                lote.clear();
+            }
+        }
+        jdbc.update("update topico set autor_id = mod(id, ?) + 1", configuracao.usuarios);
+
+        List<Long> ids = jdbc.queryForList("select id from topico order by id", Long.class);
+        List<Object[]> respostas = new ArrayList<>();
+        for (Long id : ids) {
+            for (int r = 0; r < configuracao.respostasPorTopico; r++) {
+                respostas.add(new Object[]{"Resposta " + r + " do topico " + id, id,
+                        Timestamp.valueOf(LocalDateTime.now()), 1 + (id + r) % configuracao.usuarios});
+            }
+            if (respostas.size() >= 5000) {
+                inserirRespostas(jdbc, respostas);
+            }
+        }
+        inserirRespostas(jdbc, respostas);
+
+        System.out.printf("Banco populado em %d ms: %d topicos, %d respostas%n", System.currentTimeMillis() - inicio,
+                ids.size(), (long) ids.size() * configuracao.respostasPorTopico);
+        return new long[]{ids.get(0), ids.get(ids.size() - 1)};
+    }
+
+    private static void inserirRespostas(JdbcTemplate jdbc, List<Object[]> respostas) {
+        jdbc.batchUpdate("insert into resposta(mensagem, topico_id, data_criacao, autor_id, solucao) "
+                + "values (?, ?, ?, ?, false)", respostas);
+        respostas.clear();
+    }
+
+    private static TopicoForm form(String titulo, String nomeCurso) {
+        TopicoForm form = new TopicoForm();
+        form.setTitulo(titulo);
+        form.setMensagem("Mensagem gerada pelo teste de carga para " + titulo);
+        form.setNomeCurso(nomeCurso);
+        return form;
+    }
+
+    private void executar() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(configuracao.threads);
+        long intervalo = TimeUnit.SECONDS.toNanos(1) / configuracao.taxa;
+        long inicio = System.nanoTime();
+        long inicioDaMedicao = inicio + TimeUnit.SECONDS.toNanos(configuracao.aquecimento);
+        long fim = inicioDaMedicao + TimeUnit.SECONDS.toNanos(configuracao.duracao);
+
+        System.out.printf("Carga: %d req/s por %d s (+%d s de aquecimento), %d threads%n",
+                configuracao.taxa, configuracao.duracao, configuracao.aquecimento, configuracao.threads);
+
+        for (long agendado = inicio; agendado < fim; agendado += intervalo) {
+            long espera = agendado - System.nanoTime();
+            if (espera > 0) {
+                TimeUnit.NANOSECONDS.sleep(espera);
+            }
+            long horario = agendado;
+            boolean contar = agendado >= inicioDaMedicao;
+            Endpoint endpoint = sorteio[ThreadLocalRandom.current().nextInt(sorteio.length)];
+            executor.execute(() -> requisitar(endpoint, horario, contar));
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        relatar(System.nanoTime() - inicioDaMedicao);
+    }
+
+    private void requisitar(Endpoint endpoint, long agendado, boolean contar) {
+        boolean sucesso;
+        try {
+            sucesso = chamar(endpoint);
+        } catch (IOException e) {
+            sucesso = false;
+        }
+        if (!contar) {
+            return;
+        }
+        latencias.get(endpoint).recordValue(Math.min(System.nanoTime() - agendado, MAIOR_LATENCIA_NANOS));
+        if (!sucesso) {
+            erros.get(endpoint).increment();
+        }
+    }
+
+    private boolean chamar(Endpoint endpoint) throws IOException {
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        switch (endpoint) {
+            case LISTA:
+                String filtro = aleatorio.nextBoolean() ? "" : "&nomeCurso=Curso%20" + (1 + aleatorio.nextInt(configuracao.cursos));
+                return http("GET", "/topicos?tamanho=20" + filtro, null) == 200;
+            case DETALHE:
+                return http("GET", "/topicos/" + topicoAleatorio(), null) == 200;
+            case CADASTRO:
+                long numero = sequencia.incrementAndGet();
+                String corpo = "{\"titulo\":\"Topico novo " + numero + "\",\"mensagem\":\"Criado durante a carga\","
+                        + "\"nomeCurso\":\"Curso " + (1 + numero % configuracao.cursos) + "\"}";
+                return http("POST", "/topicos", corpo) == 201;
+            case ATUALIZACAO:
+                return http("PUT", "/topicos/" + topicoAleatorio(),
+                        "{\"titulo\":\"Topico atualizado\",\"mensagem\":\"Alterado durante a carga\"}") == 200;
+            case REMOCAO:
+                // so remove o que o próprio teste criou, para os detalhes continuarem encontrando os tópicos populados;
+                // enquanto não existe nenhum, a remoção vira um cadastro (contado como remoção)
+                Long id = criadosPeloTeste.poll();
+                if (id == null) {
+                    return chamar(Endpoint.CADASTRO);
+                }
+                return http("DELETE", "/topicos/" + id, null) == 200;
+            case REMOCAO_CONDICIONAL:
+                // os tópicos do teste nunca são alterados (a atualização so pega os populados): a versão e a do cadastro
+                Long criado = criadosPeloTeste.poll();
+                if (criado == null) {
+                    return chamar(Endpoint.CADASTRO);
+                }
+                return http("DELETE", "/topicos/" + criado, null, "\"topico-0\"") == 200;
+            default:
+                throw new IllegalStateException(endpoint.name());
+        }
+    }
+
+    private long topicoAleatorio() {
+        return ThreadLocalRandom.current().nextLong(primeiroTopico, ultimoTopico + 1);
+    }
+
+    private int http(String metodo, String caminho, String corpo) throws IOException {
+        return http(metodo, caminho, corpo, null);
+    }
+
+    private int http(String metodo, String caminho, String corpo, String ifMatch) throws IOException {
+        HttpURLConnection conexao = (HttpURLConnection) new URL(baseUrl + caminho).openConnection();
+        conexao.setRequestMethod(metodo);
+        conexao.setRequestProperty("Accept", "application/json");
+        if (ifMatch != null) {
+            conexao.setRequestProperty("If-Match", ifMatch);
+        }
+        if (corpo != null) {
+            conexao.setDoOutput(true);
+            conexao.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream saida = conexao.getOutputStream()) {
+                saida.write(corpo.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = conexao.getResponseCode();
+        InputStream resposta = status < 400 ? conexao.getInputStream() : conexao.getErrorStream();
+        if (resposta != null) {
+            // ler o corpo inteiro e o que permite reaproveitar a conexão (keep-alive)
+            try (InputStream entrada = resposta) {
+                byte[] buffer = new byte[8192];
+                while (entrada.read(buffer) != -1) {
+                    // descarta
+                }
+            }
+        }
+        if (status == 201) {
+            String location = conexao.getHeaderField("Location");
+            criadosPeloTeste.add(Long.valueOf(location.substring(location.lastIndexOf('/') + 1)));
+        }
+        return status;
+    }
+
+    private void relatar(long duracaoNanos) throws IOException {
+        double segundos = duracaoNanos / 1e9;
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("dataHora", LocalDateTime.now().toString());
+        resultado.put("configuracao", configuracao.comoMapa());
+        Map<String, Object> porEndpoint = new LinkedHashMap<>();
+
+        System.out.printf("%n%-20s %10s %8s %10s %10s %10s %10s %10s%n",
+                "endpoint", "requisicoes", "erros", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (Endpoint endpoint : Endpoint.values()) {
+            Histogram histograma = latencias.get(endpoint);
+            long total = histograma.getTotalCount();
+            Map<String, Object> numeros = new LinkedHashMap<>();
+            numeros.put("requisicoes", total);
+            numeros.put("erros", erros.get(endpoint).sum());
+            numeros.put("vazao", total / segundos);
+            numeros.put("p50Ms", milissegundos(histograma.getValueAtPercentile(50)));
+            numeros.put("p99Ms", milissegundos(histograma.getValueAtPercentile(99)));
+            numeros.put("p999Ms", milissegundos(histograma.getValueAtPercentile(99.9)));
+            numeros.put("maxMs", milissegundos(histograma.getMaxValue()));
+            porEndpoint.put(endpoint.name().toLowerCase(), numeros);
+
+            System.out.printf("%-20s %10d %8d %10.1f %10.2f %10.2f %10.2f %10.2f%n", endpoint.name().toLowerCase(),
+                    total, erros.get(endpoint).sum(), total / segundos, numeros.get("p50Ms"), numeros.get("p99Ms"),
+                    numeros.get("p999Ms"), numeros.get("maxMs"));
+        }
+        resultado.put("endpoints", porEndpoint);
+
+        File diretorio = new File(configuracao.saida);
+        diretorio.mkdirs();
+        File arquivo = new File(diretorio,
+                "carga-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(arquivo, resultado);
+        System.out.println("\nResultado gravado em " + arquivo.getPath());
+    }
+
+    private static double milissegundos(long nanos) {
+        return nanos / 1e6;
+    }
+}
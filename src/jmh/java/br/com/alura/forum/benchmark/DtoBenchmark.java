@@ -0,0 +1,147 @@
+package br.com.alura.forum.benchmark;
+
+import br.com.alura.forum.controller.dto.DetalhesDoTopicoDTO;
+import br.com.alura.forum.controller.dto.TopicoDTO;
+import br.com.alura.forum.modelo.Curso;
+import br.com.alura.forum.modelo.Resposta;
+import br.com.alura.forum.modelo.Topico;
+import br.com.alura.forum.modelo.Usuario;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Custo por requisição da conversão entidade -> DTO e da serialização JSON dos DTOs, o que a API faz em toda
+    listagem e todo detalhe de tópico.
+
+    tamanhoLista e quantidadeRespostas cobrem uma página padrão (20), a página máxima (100), uma listagem grande sem
+    paginação (1000) e tópicos sem resposta, com algumas e com muitas respostas. Com o -prof gc (padrão do perfil
+    benchmark) o JMH mostra tambem o gc.alloc.rate.norm, os bytes alocados por operação.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DtoBenchmark {
+
+    // configurado como o Spring Boot configura o ObjectMapper da API: datas ISO em vez de timestamp
+    private static final ObjectMapper OBJECT_MAPPER = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    @State(Scope.Benchmark)
+    public static class Listagem {
+
+        @Param({"20", "100", "1000"})
+        private int tamanhoLista;
+
+        private List<Topico> topicos;
+        private List<TopicoDTO> topicosDto;
+
+        @Setup
+        public void setup() {
+            Curso curso = curso();
+            topicos = new ArrayList<>(tamanhoLista);
+            for (long i = 1; i <= tamanhoLista; i++) {
+                topicos.add(topico(i, curso, usuario(i)));
+            }
+            topicosDto = TopicoDTO.converter(topicos);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Detalhe {
+
+        @Param({"0", "10", "100"})
+        private int quantidadeRespostas;
+
+        private Topico topico;
+        private DetalhesDoTopicoDTO detalhes;
+
+        @Setup
+        public void setup() {
+            topico = topico(1L, curso(), usuario(1L));
+            for (long i = 1; i <= quantidadeRespostas; i++) {
+                Resposta resposta = new Resposta();
+                resposta.setId(i);
+                resposta.setMensagem("Resposta numero " + i + " com algum texto explicando a solucao do problema");
+                resposta.setAutor(usuario(i + 1));
+                resposta.setDataCriacao(LocalDateTime.of(2019, 5, 1, 10, 0).plusMinutes(i));
+                topico.adicionarResposta(resposta);
+            }
+            detalhes = new DetalhesDoTopicoDTO(topico);
+        }
+    }
+
+    @Benchmark
+    public List<TopicoDTO> converterLista(Listagem listagem) {
+        return TopicoDTO.converter(listagem.topicos);
+    }
+
+    @Benchmark
+    public byte[] serializarLista(Listagem listagem) throws JsonProcessingException {
+        return OBJECT_MAPPER.writeValueAsBytes(listagem.topicosDto);
+    }
+
+    @Benchmark
+    public byte[] converterESerializarLista(Listagem listagem) throws JsonProcessingException {
+        return OBJECT_MAPPER.writeValueAsBytes(TopicoDTO.converter(listagem.topicos));
+    }
+
+    @Benchmark
+    public DetalhesDoTopicoDTO criarDetalhes(Detalhe detalhe) {
+        return new DetalhesDoTopicoDTO(detalhe.topico);
+    }
+
+    @Benchmark
+    public byte[] serializarDetalhes(Detalhe detalhe) throws JsonProcessingException {
+        return OBJECT_MAPPER.writeValueAsBytes(detalhe.detalhes);
+    }
+
+    @Benchmark
+    public byte[] criarESerializarDetalhes(Detalhe detalhe) throws JsonProcessingException {
+        return OBJECT_MAPPER.writeValueAsBytes(new DetalhesDoTopicoDTO(detalhe.topico));
+    }
+
+    private static Curso curso() {
+        Curso curso = new Curso();
+        curso.setId(1L);
+        curso.setNome("Spring Boot");
+        curso.setCategoria("Programacao");
+        return curso;
+    }
+
+    private static Topico topico(long id, Curso curso, Usuario autor) {
+        Topico topico = new Topico("Duvida numero " + id, "Mensagem do topico " + id + " descrevendo a duvida", curso);
+        topico.setId(id);
+        topico.setAutor(autor);
+        topico.setDataCriacao(LocalDateTime.of(2019, 5, 1, 10, 0).plusSeconds(id * 37));
+        return topico;
+    }
+
+    private static Usuario usuario(long id) {
+        Usuario usuario = new Usuario();
+        usuario.setId(id);
+        usuario.setNome("Usuario " + id);
+        usuario.setEmail("usuario" + id + "@email.com");
+        return usuario;
+    }
+}
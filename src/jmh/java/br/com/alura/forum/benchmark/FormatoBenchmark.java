@@ -0,0 +1,155 @@
+package br.com.alura.forum.benchmark;
+
+import br.com.alura.forum.controller.dto.DetalhesDoTopicoDTO;
+import br.com.alura.forum.controller.dto.TopicoDTO;
+import br.com.alura.forum.modelo.Curso;
+import br.com.alura.forum.modelo.Resposta;
+import br.com.alura.forum.modelo.Topico;
+import br.com.alura.forum.modelo.Usuario;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/*
+    Custo de serializar os DTOs de tópico em cada formato que a API aceita no Accept: JSON, CBOR e Smile, e de ler a
+    lista do outro lado. Os mappers são configurados como os da aplicação (FormatosBinariosConfiguration): datas ISO
+    no JSON e timestamp nos formatos binarios.
+
+    O tamanho de cada payload, puro e com gzip, e impresso no setup, para comparar os bytes que vão pela rede com o
+    tempo de CPU medido aqui.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FormatoBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Payload {
+
+        @Param({"json", "cbor", "smile"})
+        private String formato;
+
+        @Param({"20", "100"})
+        private int tamanhoLista;
+
+        private ObjectMapper mapper;
+        private List<TopicoDTO> lista;
+        private DetalhesDoTopicoDTO detalhes;
+        private byte[] listaSerializada;
+        private byte[] detalhesSerializados;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            mapper = mapper(formato);
+
+            Curso curso = new Curso();
+            curso.setId(1L);
+            curso.setNome("Spring Boot");
+            List<Topico> topicos = new ArrayList<>(tamanhoLista);
+            for (long i = 1; i <= tamanhoLista; i++) {
+                Topico topico = new Topico("Duvida numero " + i, "Mensagem do topico " + i + " descrevendo a duvida",
+                        curso);
+                topico.setId(i);
+                topico.setAutor(usuario(i));
+                topico.setDataCriacao(LocalDateTime.of(2019, 5, 1, 10, 0).plusSeconds(i * 37));
+                topicos.add(topico);
+            }
+            lista = TopicoDTO.converter(topicos);
+
+            // o detalhe usa um tópico com 10 respostas, o caso tipico do GET /topicos/{id}
+            Topico topico = topicos.get(0);
+            for (long i = 1; i <= 10; i++) {
+                Resposta resposta = new Resposta();
+                resposta.setId(i);
+                resposta.setMensagem("Resposta numero " + i + " com algum texto explicando a solucao do problema");
+                resposta.setAutor(usuario(i + 1));
+                resposta.setDataCriacao(LocalDateTime.of(2019, 5, 1, 10, 0).plusMinutes(i));
+                topico.adicionarResposta(resposta);
+            }
+            detalhes = new DetalhesDoTopicoDTO(topico);
+
+            listaSerializada = mapper.writeValueAsBytes(lista);
+            detalhesSerializados = mapper.writeValueAsBytes(detalhes);
+            System.out.printf("%n%s: lista de %d = %d bytes (gzip %d), detalhe = %d bytes (gzip %d)%n",
+                    formato, tamanhoLista, listaSerializada.length, gzip(listaSerializada).length,
+                    detalhesSerializados.length, gzip(detalhesSerializados).length);
+        }
+    }
+
+    @Benchmark
+    public byte[] serializarLista(Payload payload) throws IOException {
+        return payload.mapper.writeValueAsBytes(payload.lista);
+    }
+
+    // o lado de quem consome: os DTOs não tem construtor padrão, então a leitura e para uma árvore generica
+    @Benchmark
+    public JsonNode lerLista(Payload payload) throws IOException {
+        return payload.mapper.readTree(payload.listaSerializada);
+    }
+
+    @Benchmark
+    public byte[] serializarDetalhes(Payload payload) throws IOException {
+        return payload.mapper.writeValueAsBytes(payload.detalhes);
+    }
+
+    @Benchmark
+    public byte[] serializarListaComGzip(Payload payload) throws IOException {
+        return gzip(payload.mapper.writeValueAsBytes(payload.lista));
+    }
+
+    private static ObjectMapper mapper(String formato) {
+        switch (formato) {
+            case "json":
+                return Jackson2ObjectMapperBuilder.json()
+                        .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                        .build();
+            case "cbor":
+                return Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build();
+            case "smile":
+                return Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).build();
+            default:
+                throw new IllegalArgumentException("Formato desconhecido: " + formato);
+        }
+    }
+
+    private static byte[] gzip(byte[] dados) throws IOException {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream(dados.length);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(saida)) {
+            gzip.write(dados);
+        }
+        return saida.toByteArray();
+    }
+
+    private static Usuario usuario(long id) {
+        Usuario usuario = new Usuario();
+        usuario.setId(id);
+        usuario.setNome("Usuario " + id);
+        usuario.setEmail("usuario" + id + "@email.com");
+        return usuario;
+    }
+}
@@ -0,0 +1,65 @@
+package br.com.alura.forum.config.admissao;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.Semaphore;
+
+/*
+    Liga o ControleDeAdmissaoInterceptor nos endpoints de /topicos, com os limites do application.properties
+    (forum.admissao.*). As vagas livres de cada tipo ficam no gauge forum.admissao.vagas.
+ */
+@Configuration
+public class AdmissaoConfiguration implements WebMvcConfigurer {
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Value("${forum.admissao.taxa}")
+    private int taxa;
+
+    @Value("${forum.admissao.rajada}")
+    private int rajada;
+
+    @Value("${forum.admissao.concorrencia-caros}")
+    private int concorrenciaCaros;
+
+    @Value("${forum.admissao.concorrencia-baratos}")
+    private int concorrenciaBaratos;
+
+    @Value("${forum.admissao.proxies}")
+    private String[] proxies;
+
+    @Bean
+    public BaldesPorCliente baldesPorCliente() {
+        BaldesPorCliente baldes = new BaldesPorCliente(taxa, rajada);
+        Gauge.builder("forum.admissao.clientes", baldes, BaldesPorCliente::clientes)
+                .description("Clientes com requisições recentes no limite de taxa")
+                .register(registry);
+        return baldes;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ControleDeAdmissaoInterceptor(baldesPorCliente(), vagas("caro", concorrenciaCaros),
+                vagas("barato", concorrenciaBaratos), new HashSet<>(Arrays.asList(proxies)), this.registry))
+                .addPathPatterns("/topicos", "/topicos/**");
+    }
+
+    private Semaphore vagas(String custo, int quantidade) {
+        Semaphore vagas = new Semaphore(quantidade);
+        Gauge.builder("forum.admissao.vagas", vagas, Semaphore::availablePermits)
+                .description("Vagas de concorrência livres")
+                .tag("custo", custo)
+                .register(registry);
+        return vagas;
+    }
+}
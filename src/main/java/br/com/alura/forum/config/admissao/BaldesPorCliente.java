@@ -0,0 +1,60 @@
+package br.com.alura.forum.config.admissao;
+
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    Um balde de fichas por cliente: cada cliente pode fazer taxa requisições por segundo, com rajadas de até rajada
+    requisições seguidas.
+
+    O balde de cada cliente e um unico AtomicLong, no formato do GCRA (generic cell rate algorithm): em vez de contar
+    fichas, guardamos o instante em que o balde estaria cheio de novo. Cada requisição empurra esse instante um
+    intervalo (1 / taxa) para frente, e e recusada se ele passaria de rajada intervalos a partir de agora. Admitir ou
+    recusar e um compareAndSet, sem lock; o ConcurrentHashMap so trava na criação do balde de um cliente novo.
+
+    Um balde que ja encheu de novo e igual a um balde novo, então a limpeza agendada remove esses clientes e o mapa so
+    guarda quem fez requisições nos ultimos segundos.
+ */
+class BaldesPorCliente {
+
+    private final ConcurrentMap<String, AtomicLong> cheioEm = new ConcurrentHashMap<>();
+    private final long intervalo;
+    private final long tolerancia;
+
+    BaldesPorCliente(int taxa, int rajada) {
+        this.intervalo = TimeUnit.SECONDS.toNanos(1) / taxa;
+        this.tolerancia = intervalo * rajada;
+    }
+
+    // 0 quando a requisição foi admitida, senão quantos nanossegundos o cliente precisa esperar
+    long reservar(String cliente) {
+        AtomicLong balde = cheioEm.computeIfAbsent(cliente, c -> new AtomicLong(System.nanoTime()));
+        while (true) {
+            long agora = System.nanoTime();
+            long atual = balde.get();
+            // nanoTime pode ser negativo e dar a volta: as comparações são sempre pela diferença
+            long novo = (atual - agora < 0 ? agora : atual) + intervalo;
+            long espera = novo - agora - tolerancia;
+            if (espera > 0) {
+                return espera;
+            }
+            if (balde.compareAndSet(atual, novo)) {
+                return 0;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void removerBaldesCheios() {
+        long agora = System.nanoTime();
+        cheioEm.values().removeIf(balde -> balde.get() - agora <= 0);
+    }
+
+    int clientes() {
+        return cheioEm.size();
+    }
+}
@@ -0,0 +1,120 @@
+package br.com.alura.forum.config.admissao;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Controle de admissão na frente do TopicosController. Antes do controller, cada requisição passa por dois filtros:
+
+    - a taxa do cliente (BaldesPorCliente), identificado pelo endereço de origem. Atras de um proxy reverso o
+      endereço de origem e o do proxy, e todos os clientes cairiam no mesmo balde: quando a requisição vem de um dos
+      proxies confiaveis (forum.admissao.proxies), o cliente e o ultimo endereço do X-Forwarded-For que não e um
+      deles. Os endereços mais a esquerda qualquer um pode inventar, por isso a busca vai da direita para a esquerda,
+      e o cabeçalho de quem não e proxy confiavel e ignorado;
+    - uma vaga de concorrência: os metodos com @EndpointCaro dividem poucas vagas, os outros dividem mais. Assim um pico
+      de listagens não consegue tomar todas as conexões do pool e travar os detalhes e os cadastros.
+
+    Quem não passa recebe 429 na hora, com o Retry-After em segundos, em vez de ficar esperando uma conexão. As vagas
+    são Semaphores consultados com tryAcquire, que não bloqueia. As recusas ficam na métrica forum.admissao.recusadas
+    (tags motivo=taxa|concorrencia e custo=caro|barato).
+ */
+class ControleDeAdmissaoInterceptor extends HandlerInterceptorAdapter {
+
+    private static final String ATRIBUTO_VAGA = ControleDeAdmissaoInterceptor.class.getName() + ".vaga";
+
+    private final BaldesPorCliente baldes;
+    private final Semaphore vagasCaras;
+    private final Semaphore vagasBaratas;
+    private final Set<String> proxies;
+    private final MeterRegistry registry;
+
+    ControleDeAdmissaoInterceptor(BaldesPorCliente baldes, Semaphore vagasCaras, Semaphore vagasBaratas,
+                                  Set<String> proxies, MeterRegistry registry) {
+        this.baldes = baldes;
+        this.vagasCaras = vagasCaras;
+        this.vagasBaratas = vagasBaratas;
+        this.proxies = proxies;
+        this.registry = registry;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // o fim de uma requisição assíncrona (o stream) volta pelo DispatcherServlet, mas ela ja foi admitida
+        if (request.getDispatcherType() == DispatcherType.ASYNC || !(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        boolean caro = ((HandlerMethod) handler).hasMethodAnnotation(EndpointCaro.class);
+
+        long espera = baldes.reservar(cliente(request));
+        if (espera > 0) {
+            return recusar(response, "taxa", caro, TimeUnit.NANOSECONDS.toSeconds(espera) + 1);
+        }
+
+        Semaphore vagas = caro ? vagasCaras : vagasBaratas;
+        if (!vagas.tryAcquire()) {
+            return recusar(response, "concorrencia", caro, 1);
+        }
+        request.setAttribute(ATRIBUTO_VAGA, vagas);
+        return true;
+    }
+
+    private String cliente(HttpServletRequest request) {
+        String cliente = request.getRemoteAddr();
+        String encaminhado = request.getHeader("X-Forwarded-For");
+        if (encaminhado == null) {
+            return cliente;
+        }
+        String[] enderecos = encaminhado.split(",");
+        for (int i = enderecos.length - 1; i >= 0 && proxies.contains(cliente); i--) {
+            String endereco = enderecos[i].trim();
+            if (!endereco.isEmpty()) {
+                cliente = endereco;
+            }
+        }
+        return cliente;
+    }
+
+    // o stream continua aberto depois daqui, mas não segura conexão do banco: a vaga e devolvida
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        liberar(request);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        liberar(request);
+    }
+
+    private static void liberar(HttpServletRequest request) {
+        Semaphore vagas = (Semaphore) request.getAttribute(ATRIBUTO_VAGA);
+        if (vagas != null) {
+            request.removeAttribute(ATRIBUTO_VAGA);
+            vagas.release();
+        }
+    }
+
+    private boolean recusar(HttpServletResponse response, String motivo, boolean caro, long segundos) {
+        Counter.builder("forum.admissao.recusadas")
+                .description("Requisições recusadas com 429 pelo controle de admissão")
+                .tag("motivo", motivo)
+                .tag("custo", caro ? "caro" : "barato")
+                .register(registry)
+                .increment();
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(segundos));
+        return false;
+    }
+}
@@ -0,0 +1,16 @@
+package br.com.alura.forum.config.admissao;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/*
+    Marca os metodos de controller que seguram uma conexão do banco por mais tempo (listagens, busca, exportação,
+    operações em lote). Eles dividem um limite de concorrência menor que o dos outros endpoints, ver
+    ControleDeAdmissaoInterceptor.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface EndpointCaro {
+}
@@ -0,0 +1,90 @@
+package br.com.alura.forum.config.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/*
+    O DataSource da aplicação quando existem réplicas. Cada conexão vai para um banco: transações readOnly (as
+    consultas dos repositórios do Spring Data, o @Transactional(readOnly = true) dos serviços) leem de uma das
+    réplicas; todo o resto vai para o primário, assim como as leituras do cliente que acabou de escrever (ver
+    LeituraAposEscrita). Sem nenhuma réplica saudavel a leitura também vai para o primário.
+
+    O tipo da transação so e conhecido depois que ela começou, e o Hibernate pede a conexão logo no begin. Por isso
+    a escolha fica atras de um LazyConnectionDataSourceProxy, que so pede a conexão de verdade no primeiro comando SQL,
+    quando o readOnly ja esta marcado.
+
+    Uma leitura na réplica so consulta os caches do Hibernate (segundo nivel e consultas), sem gravar neles: a réplica
+    pode estar atrasada, e uma consulta feita logo depois de uma escrita guardaria o resultado antigo com um timestamp
+    mais novo que o da invalidação. Ele seria servido a todos, inclusive a quem tem o cookie da LeituraAposEscrita,
+    até a próxima escrita. Assim os caches so recebem o que foi lido do primário.
+ */
+public class DataSourceComReplicas extends LazyConnectionDataSourceProxy implements Closeable {
+
+    private final HikariDataSource primario;
+    private final Replicas replicas;
+
+    DataSourceComReplicas(HikariDataSource primario, Replicas replicas) {
+        this.primario = primario;
+        this.replicas = replicas;
+        setTargetDataSource(new Roteamento());
+    }
+
+    @Override
+    public void close() {
+        primario.close();
+    }
+
+    private class Roteamento extends AbstractDataSource {
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+                return primario.getConnection();
+            }
+            if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+                LeituraAposEscrita.escritaRealizada();
+                return primario.getConnection();
+            }
+            if (!LeituraAposEscrita.deveLerDoPrimario()) {
+                Connection replica = replicas.getConnection();
+                if (replica != null) {
+                    soConsultarOsCaches();
+                    return replica;
+                }
+            }
+            return primario.getConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return primario.getConnection(username, password);
+        }
+    }
+
+    // CacheMode.GET na sessão do Hibernate da transação atual, que volta ao modo anterior no fim da transação
+    private static void soConsultarOsCaches() {
+        for (Object recurso : TransactionSynchronizationManager.getResourceMap().values()) {
+            if (recurso instanceof EntityManagerHolder) {
+                Session sessao = ((EntityManagerHolder) recurso).getEntityManager().unwrap(Session.class);
+                CacheMode anterior = sessao.getCacheMode();
+                sessao.setCacheMode(CacheMode.GET);
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        sessao.setCacheMode(anterior);
+                    }
+                });
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package br.com.alura.forum.config.datasource;
+
+/*
+    Estado do read-your-writes da requisição atual, guardado na thread como o Spring faz com a transação.
+
+    O LeituraAposEscritaFilter abre o estado no inicio da requisição, dizendo se o cliente escreveu ha pouco (o cookie
+    ainda não expirou). Quando a requisição pega uma conexão de escrita, o DataSourceComReplicas avisa aqui: dali em
+    diante as leituras da mesma requisição vão para o primário, e o filtro renova o cookie para as próximas.
+
+    Fora de uma requisição (tarefas agendadas, a subida da aplicação) não existe estado e as leituras vão para as
+    réplicas normalmente.
+ */
+final class LeituraAposEscrita {
+
+    private static final ThreadLocal<LeituraAposEscrita> ATUAL = new ThreadLocal<>();
+
+    private boolean usarPrimario;
+    private final Runnable aoEscrever;
+
+    private LeituraAposEscrita(boolean usarPrimario, Runnable aoEscrever) {
+        this.usarPrimario = usarPrimario;
+        this.aoEscrever = aoEscrever;
+    }
+
+    static void iniciar(boolean escritaRecente, Runnable aoEscrever) {
+        ATUAL.set(new LeituraAposEscrita(escritaRecente, aoEscrever));
+    }
+
+    static void finalizar() {
+        ATUAL.remove();
+    }
+
+    static boolean deveLerDoPrimario() {
+        LeituraAposEscrita atual = ATUAL.get();
+        return atual != null && atual.usarPrimario;
+    }
+
+    static void escritaRealizada() {
+        LeituraAposEscrita atual = ATUAL.get();
+        if (atual != null && !atual.usarPrimario) {
+            atual.usarPrimario = true;
+            atual.aoEscrever.run();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package br.com.alura.forum.config.datasource;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/*
+    Janela de read-your-writes entre requisições: depois de uma escrita o cliente recebe um cookie que vale pelo tempo
+    de forum.datasource.leitura-apos-escrita, e enquanto ele voltar com o cookie as leituras vão para o primário. Assim
+    quem acabou de cadastrar um tópico o encontra na lista mesmo que a réplica ainda não tenha recebido a alteração.
+
+    O cookie e adicionado no momento da escrita, e não no final: quando o controller devolve o corpo a resposta ja pode
+    ter sido enviada.
+ */
+class LeituraAposEscritaFilter extends OncePerRequestFilter {
+
+    static final String COOKIE = "forum-escrita";
+
+    private final int janelaEmSegundos;
+
+    LeituraAposEscritaFilter(long janelaEmMilissegundos) {
+        this.janelaEmSegundos = (int) Math.max(1, (janelaEmMilissegundos + 999) / 1000);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        LeituraAposEscrita.iniciar(escritaRecente(request), () -> {
+            Cookie cookie = new Cookie(COOKIE, "1");
+            cookie.setMaxAge(janelaEmSegundos);
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            response.addCookie(cookie);
+        });
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            LeituraAposEscrita.finalizar();
+        }
+    }
+
+    private static boolean escritaRecente(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (COOKIE.equals(cookie.getName())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
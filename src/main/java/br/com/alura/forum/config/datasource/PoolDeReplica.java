@@ -0,0 +1,90 @@
+package br.com.alura.forum.config.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+
+/*
+    Uma réplica de leitura: o pool de conexões dela e se ela esta saudavel. Uma réplica que falhou ao entregar uma
+    conexão sai do rodizio até a próxima verificação bem sucedida.
+
+    Nem todo SQLTransientConnectionException e falha da réplica: o Hikari lança o mesmo erro quando o pool esta
+    cheio e nenhuma conexão foi devolvida dentro do esperaPorConexao. Se todas as conexões estão emprestadas o banco
+    esta respondendo, so esta ocupado, então a réplica continua no rodizio e so esta requisição vai para a próxima.
+    A causa da exceção não serve para separar os dois casos: um banco que não responde ao connect (rede caida) também
+    estoura o tempo sem causa, porque a tentativa de abrir a conexão ainda não terminou.
+ */
+class PoolDeReplica {
+
+    private static final int TIMEOUT_VERIFICACAO_SEGUNDOS = 2;
+
+    private final String nome;
+    private final HikariDataSource dataSource;
+    private volatile boolean saudavel = true;
+    private volatile String ultimoErro;
+
+    PoolDeReplica(String nome, HikariDataSource dataSource) {
+        this.nome = nome;
+        this.dataSource = dataSource;
+    }
+
+    Connection getConnection() throws SQLException {
+        try {
+            return dataSource.getConnection();
+        } catch (SQLException e) {
+            if (!semConexaoLivre(e)) {
+                marcarFalha(e);
+            }
+            throw e;
+        }
+    }
+
+    void verificar() {
+        try (Connection conexao = dataSource.getConnection()) {
+            if (conexao.isValid(TIMEOUT_VERIFICACAO_SEGUNDOS)) {
+                saudavel = true;
+                ultimoErro = null;
+            } else {
+                saudavel = false;
+                ultimoErro = "conexão invalida";
+            }
+        } catch (SQLException e) {
+            // com o pool cheio a verificação não descobre nada, a réplica fica como estava
+            if (!semConexaoLivre(e)) {
+                marcarFalha(e);
+            }
+        }
+    }
+
+    private boolean semConexaoLivre(SQLException e) {
+        if (!(e instanceof SQLTransientConnectionException)) {
+            return false;
+        }
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        return pool != null && pool.getActiveConnections() >= dataSource.getMaximumPoolSize();
+    }
+
+    private void marcarFalha(SQLException e) {
+        saudavel = false;
+        ultimoErro = e.getMessage();
+    }
+
+    String getNome() {
+        return nome;
+    }
+
+    boolean isSaudavel() {
+        return saudavel;
+    }
+
+    String getUltimoErro() {
+        return ultimoErro;
+    }
+
+    void fechar() {
+        dataSource.close();
+    }
+}
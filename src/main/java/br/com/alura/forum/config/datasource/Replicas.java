@@ -0,0 +1,68 @@
+package br.com.alura.forum.config.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+    Os pools das réplicas de leitura, usados em rodizio. Se a réplica da vez não entrega a conexão ela e marcada como
+    fora e a próxima e tentada; a verificação agendada traz de volta as que voltaram a responder.
+ */
+public class Replicas implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Replicas.class);
+
+    private final List<PoolDeReplica> pools;
+    private final AtomicInteger proxima = new AtomicInteger();
+
+    Replicas(List<PoolDeReplica> pools) {
+        this.pools = pools;
+    }
+
+    // null quando nenhuma réplica saudavel entregou a conexão
+    Connection getConnection() {
+        int inicio = Math.floorMod(proxima.getAndIncrement(), pools.size());
+        for (int i = 0; i < pools.size(); i++) {
+            PoolDeReplica replica = pools.get((inicio + i) % pools.size());
+            if (!replica.isSaudavel()) {
+                continue;
+            }
+            try {
+                return replica.getConnection();
+            } catch (SQLException e) {
+                if (replica.isSaudavel()) {
+                    LOGGER.debug("Replica {} sem conexão livre: {}", replica.getNome(), e.getMessage());
+                } else {
+                    LOGGER.warn("Replica {} fora do rodizio: {}", replica.getNome(), e.getMessage());
+                }
+            }
+        }
+        return null;
+    }
+
+    // agendado pelo ReplicasConfiguration, a cada forum.datasource.verificacao-replicas
+    void verificar() {
+        for (PoolDeReplica replica : pools) {
+            boolean estavaSaudavel = replica.isSaudavel();
+            replica.verificar();
+            if (replica.isSaudavel() != estavaSaudavel) {
+                LOGGER.info("Replica {} {}", replica.getNome(), replica.isSaudavel() ? "de volta ao rodizio"
+                        : "fora do rodizio: " + replica.getUltimoErro());
+            }
+        }
+    }
+
+    List<PoolDeReplica> getPools() {
+        return pools;
+    }
+
+    @Override
+    public void close() {
+        pools.forEach(PoolDeReplica::fechar);
+    }
+}
@@ -0,0 +1,107 @@
+package br.com.alura.forum.config.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    Leituras nas réplicas, escritas no primário. So entra em ação quando existe ao menos uma réplica configurada
+    (forum.datasource.replicas[0].url); sem isso o Spring Boot cria o DataSource de sempre.
+
+    O primário continua vindo do spring.datasource.* (e spring.datasource.hikari.*). Cada réplica ganha o seu pool
+    Hikari, com as métricas em hikaricp.connections{pool=replica-N}. O DataSource que o JPA e o JdbcTemplate recebem
+    e o DataSourceComReplicas, que escolhe entre os dois a cada conexão.
+
+    Para testar localmente existe o perfil "replicas" (application-replicas.properties), em que as réplicas são
+    outros pools para o mesmo H2 em memória: o roteamento e a verificação funcionam como em produção, so que sem
+    atraso de replicação.
+ */
+@Configuration
+@ConditionalOnProperty("forum.datasource.replicas[0].url")
+@EnableConfigurationProperties(ReplicasProperties.class)
+public class ReplicasConfiguration {
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Bean
+    public Replicas replicas(ReplicasProperties properties) {
+        List<PoolDeReplica> pools = new ArrayList<>();
+        for (int i = 0; i < properties.getReplicas().size(); i++) {
+            ReplicasProperties.Replica replica = properties.getReplicas().get(i);
+            HikariDataSource pool = new HikariDataSource();
+            pool.setPoolName("replica-" + i);
+            pool.setJdbcUrl(replica.getUrl());
+            pool.setUsername(replica.getUsername());
+            pool.setPassword(replica.getPassword());
+            pool.setMaximumPoolSize(replica.getMaximoDeConexoes());
+            pool.setConnectionTimeout(replica.getEsperaPorConexao());
+            pool.setReadOnly(true);
+            // não trava a subida da aplicação se a réplica estiver fora, ela so fica fora do rodizio
+            pool.setInitializationFailTimeout(-1);
+            pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+            pools.add(new PoolDeReplica(pool.getPoolName(), pool));
+        }
+        return new Replicas(pools);
+    }
+
+    /*
+        O primário não e um bean separado: o Spring Boot inicializa o banco (DataSourceInitializer) a cada DataSource
+        criado, e com dois beans DataSource dependentes um do outro isso vira uma referência circular. As propriedades
+        spring.datasource.hikari.* são aplicadas na mão.
+     */
+    @Bean
+    public DataSourceComReplicas dataSource(DataSourceProperties properties, Environment environment,
+                                            Replicas replicas) {
+        HikariDataSource primario = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primario));
+        if (primario.getPoolName() == null) {
+            primario.setPoolName("primario");
+        }
+        primario.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+        return new DataSourceComReplicas(primario, replicas);
+    }
+
+    /*
+        Com o open-in-view o EntityManager vive a requisição inteira, e o Spring configura o Hibernate para segurar a
+        conexão até o fim dele. A primeira transação da requisição escolheria o banco de todas as outras: uma leitura
+        readOnly no começo mandaria para a réplica a escrita que vem depois. Devolvendo a conexão no fim de cada
+        transação, cada uma passa de novo pelo DataSourceComReplicas.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer conexaoPorTransacaoCustomizer() {
+        return propriedades -> propriedades.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+
+    @Bean
+    public SchedulingConfigurer verificacaoDasReplicas(Replicas replicas, ReplicasProperties properties) {
+        return agendamento -> agendamento.addFixedDelayTask(replicas::verificar, properties.getVerificacaoReplicas());
+    }
+
+    @Bean
+    public LeituraAposEscritaFilter leituraAposEscritaFilter(ReplicasProperties properties) {
+        return new LeituraAposEscritaFilter(properties.getLeituraAposEscrita());
+    }
+
+    @Bean
+    public ReplicasHealthIndicator replicasHealthIndicator(Replicas replicas) {
+        return new ReplicasHealthIndicator(replicas);
+    }
+}
@@ -0,0 +1,31 @@
+package br.com.alura.forum.config.datasource;
+
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+
+/*
+    Estado de cada réplica em /actuator/health, no componente "replicas". Fica UP mesmo com réplicas fora, porque as
+    leituras continuam no primário; os detalhes mostram quais estão fora e o ultimo erro de cada uma.
+ */
+class ReplicasHealthIndicator extends AbstractHealthIndicator {
+
+    private final Replicas replicas;
+
+    ReplicasHealthIndicator(Replicas replicas) {
+        this.replicas = replicas;
+    }
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        int saudaveis = 0;
+        for (PoolDeReplica replica : replicas.getPools()) {
+            if (replica.isSaudavel()) {
+                saudaveis++;
+                builder.withDetail(replica.getNome(), "UP");
+            } else {
+                builder.withDetail(replica.getNome(), "DOWN: " + replica.getUltimoErro());
+            }
+        }
+        builder.up().withDetail("saudaveis", saudaveis);
+    }
+}
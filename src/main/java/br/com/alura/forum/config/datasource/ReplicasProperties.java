@@ -0,0 +1,96 @@
+package br.com.alura.forum.config.datasource;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    Propriedades forum.datasource.*: as réplicas de leitura e os tempos do roteamento. O banco primário continua
+    configurado pelo spring.datasource.* de sempre.
+ */
+@ConfigurationProperties("forum.datasource")
+public class ReplicasProperties {
+
+    private List<Replica> replicas = new ArrayList<>();
+
+    // milissegundos depois de uma escrita em que o mesmo cliente continua lendo do primário
+    private long leituraAposEscrita = 5000;
+
+    // milissegundos entre as verificações das réplicas, também o tempo que uma réplica com erro fica fora
+    private long verificacaoReplicas = 10000;
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    public void setReplicas(List<Replica> replicas) {
+        this.replicas = replicas;
+    }
+
+    public long getLeituraAposEscrita() {
+        return leituraAposEscrita;
+    }
+
+    public void setLeituraAposEscrita(long leituraAposEscrita) {
+        this.leituraAposEscrita = leituraAposEscrita;
+    }
+
+    public long getVerificacaoReplicas() {
+        return verificacaoReplicas;
+    }
+
+    public void setVerificacaoReplicas(long verificacaoReplicas) {
+        this.verificacaoReplicas = verificacaoReplicas;
+    }
+
+    public static class Replica {
+
+        private String url;
+        private String username;
+        private String password;
+        private int maximoDeConexoes = 10;
+        // milissegundos esperando uma conexão antes de desistir da réplica e tentar a próxima
+        private long esperaPorConexao = 2000;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public int getMaximoDeConexoes() {
+            return maximoDeConexoes;
+        }
+
+        public void setMaximoDeConexoes(int maximoDeConexoes) {
+            this.maximoDeConexoes = maximoDeConexoes;
+        }
+
+        public long getEsperaPorConexao() {
+            return esperaPorConexao;
+        }
+
+        public void setEsperaPorConexao(long esperaPorConexao) {
+            this.esperaPorConexao = esperaPorConexao;
+        }
+    }
+}
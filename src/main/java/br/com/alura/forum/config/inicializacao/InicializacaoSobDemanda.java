@@ -0,0 +1,64 @@
+package br.com.alura.forum.config.inicializacao;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.ScannedGenericBeanDefinition;
+import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+
+/*
+    Com forum.inicializacao.sob-demanda (ligado no perfil "rapido"), os componentes da aplicação que so servem
+    requisições, como o TopicosController e os services que ele chama, são criados na primeira requisição em vez de na
+    subida. E o spring.main.lazy-initialization do Spring Boot 2.2, restrito ao que e seguro adiar aqui:
+
+    - so os componentes do component scan. Os beans da auto-configuração (servidor, pool, Hibernate, Flyway) continuam
+      na subida, porque a primeira requisição precisaria deles de qualquer forma e pagaria a conta;
+    - nenhum @Configuration nem @ControllerAdvice;
+    - nada que tenha trabalho na subida ou fora das requisições: @Scheduled, @EventListener, @PostConstruct,
+      @PreDestroy ou ApplicationListener (o indice de busca carrega no ApplicationReadyEvent, o TopicosAoVivo manda
+      heartbeats, o DetalhesDoTopicoService limpa as cargas expiradas...).
+
+    O ganho de cada perfil e medido pelo BenchmarkDePartida (./mvnw -Ppartida -DskipTests verify).
+ */
+@Component
+@ConditionalOnProperty("forum.inicializacao.sob-demanda")
+public class InicializacaoSobDemanda implements BeanFactoryPostProcessor {
+
+    private static final List<String> ANOTACOES_DE_CLASSE = Arrays.asList(
+            "org.springframework.context.annotation.Configuration",
+            "org.springframework.web.bind.annotation.ControllerAdvice");
+
+    private static final List<String> ANOTACOES_DE_METODO = Arrays.asList(
+            "org.springframework.scheduling.annotation.Scheduled",
+            "org.springframework.context.event.EventListener",
+            "javax.annotation.PostConstruct",
+            "javax.annotation.PreDestroy");
+
+    private static final List<String> INTERFACES = Arrays.asList(
+            "org.springframework.context.ApplicationListener",
+            "org.springframework.context.SmartLifecycle",
+            "org.springframework.beans.factory.SmartInitializingSingleton");
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+        for (String nome : beanFactory.getBeanDefinitionNames()) {
+            BeanDefinition definicao = beanFactory.getBeanDefinition(nome);
+            if (definicao instanceof ScannedGenericBeanDefinition
+                    && podeAdiar(((ScannedGenericBeanDefinition) definicao).getMetadata())) {
+                definicao.setLazyInit(true);
+            }
+        }
+    }
+
+    // decide pelos metadados lidos no scan, sem carregar a classe
+    private static boolean podeAdiar(AnnotationMetadata metadata) {
+        return ANOTACOES_DE_CLASSE.stream().noneMatch(metadata::isAnnotated)
+                && ANOTACOES_DE_METODO.stream().noneMatch(metadata::hasAnnotatedMethods)
+                && Arrays.stream(metadata.getInterfaceNames()).noneMatch(INTERFACES::contains);
+    }
+}
@@ -0,0 +1,61 @@
+package br.com.alura.forum.config.metricas;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/*
+    Registra, para cada metodo de controller, a distribuição de comandos SQL por requisição na métrica
+    forum.consultas.por.requisicao (tag endpoint, ex.: TopicosController.detalhar).
+
+    E a métrica que denuncia um N+1: o tempo da requisição pode até continuar aceitavel com poucos dados, mas o numero
+    de consultas cresce junto com a quantidade de registros.
+ */
+public class ConsultasPorRequisicaoInterceptor extends HandlerInterceptorAdapter {
+
+    static final String METRICA = "forum.consultas.por.requisicao";
+
+    private final ContadorDeConsultas contador;
+    private final MeterRegistry registry;
+
+    public ConsultasPorRequisicaoInterceptor(ContadorDeConsultas contador, MeterRegistry registry) {
+        this.contador = contador;
+        this.registry = registry;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod) {
+            contador.iniciar();
+        }
+        return true;
+    }
+
+    // requisições assíncronas (o stream) terminam em outra thread: o contador desta thread e descartado aqui
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        contador.finalizar();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        int consultas = contador.finalizar();
+        if (consultas < 0 || !(handler instanceof HandlerMethod)) {
+            return;
+        }
+        HandlerMethod metodo = (HandlerMethod) handler;
+        String endpoint = metodo.getBeanType().getSimpleName() + "." + metodo.getMethod().getName();
+        DistributionSummary.builder(METRICA)
+                .description("Comandos SQL preparados por requisição")
+                .tag("endpoint", endpoint)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(consultas);
+    }
+}
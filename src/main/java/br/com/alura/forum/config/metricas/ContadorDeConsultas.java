@@ -0,0 +1,34 @@
+package br.com.alura.forum.config.metricas;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/*
+    Conta quantos comandos SQL o Hibernate prepara durante uma requisição.
+
+    O Hibernate chama o StatementInspector antes de preparar cada comando, na mesma thread da requisição, então um
+    contador por thread basta. Fora de uma requisição (contador não iniciado) nada e contado.
+ */
+public class ContadorDeConsultas implements StatementInspector {
+
+    private final ThreadLocal<int[]> contador = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        int[] atual = contador.get();
+        if (atual != null) {
+            atual[0]++;
+        }
+        return sql;
+    }
+
+    void iniciar() {
+        contador.set(new int[1]);
+    }
+
+    // devolve quantos comandos foram preparados desde o iniciar, ou -1 se ele não foi chamado nesta thread
+    int finalizar() {
+        int[] atual = contador.get();
+        contador.remove();
+        return atual == null ? -1 : atual[0];
+    }
+}
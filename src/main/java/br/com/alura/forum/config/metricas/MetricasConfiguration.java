@@ -0,0 +1,40 @@
+package br.com.alura.forum.config.metricas;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/*
+    Métricas da aplicação, expostas em /actuator/prometheus.
+
+    O Spring Boot ja publica sozinho a latência de cada endpoint (http.server.requests), o pool do Hikari
+    (hikaricp.connections.*) e as estatisticas do Hibernate (hibernate.*), ligadas no application.properties. O que
+    falta e saber quantas consultas cada requisição fez, que e o que esta classe adiciona.
+ */
+@Configuration
+public class MetricasConfiguration implements WebMvcConfigurer {
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Bean
+    public ContadorDeConsultas contadorDeConsultas() {
+        return new ContadorDeConsultas();
+    }
+
+    // entrega a instancia do Spring para o Hibernate, em vez de ele criar outra a partir do nome da classe
+    @Bean
+    public HibernatePropertiesCustomizer contadorDeConsultasCustomizer(ContadorDeConsultas contadorDeConsultas) {
+        return propriedades -> propriedades.put(AvailableSettings.STATEMENT_INSPECTOR, contadorDeConsultas);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ConsultasPorRequisicaoInterceptor(contadorDeConsultas(), this.registry));
+    }
+}
@@ -0,0 +1,33 @@
+package br.com.alura.forum.controller;
+
+import br.com.alura.forum.controller.dto.EstatisticasDTO;
+import br.com.alura.forum.service.estatisticas.EstatisticasDeTopicos;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/*
+    Quantidade de tópicos por curso, por status e por dia, para o time de analise não precisar percorrer o
+    GET /topicos e somar do lado dele. A resposta sai dos resumos mantidos pelo EstatisticasDeTopicos, então o custo
+    não cresce com a quantidade de tópicos.
+ */
+@RestController
+@RequestMapping("/estatisticas")
+public class EstatisticasController {
+
+    @Autowired
+    private EstatisticasDeTopicos estatisticasDeTopicos;
+
+    @GetMapping
+    public EstatisticasDTO consultar() {
+        return estatisticasDeTopicos.consultar();
+    }
+
+    // recalcula os resumos a partir da tabela de tópicos, para corrigir o que tiver sido gravado direto no banco
+    @PostMapping("/reconstrucao")
+    public EstatisticasDTO reconstruir() {
+        return estatisticasDeTopicos.reconstruir();
+    }
+}
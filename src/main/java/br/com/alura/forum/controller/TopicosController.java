@@ -1,22 +1,57 @@
 package br.com.alura.forum.controller;
 
+import br.com.alura.forum.config.admissao.EndpointCaro;
+import br.com.alura.forum.controller.dto.AlteracaoDeStatusEmLoteDTO;
 import br.com.alura.forum.controller.dto.DetalhesDoTopicoDTO;
 import br.com.alura.forum.controller.dto.TopicoDTO;
+import br.com.alura.forum.controller.form.AlteracaoDeStatusEmLoteForm;
 import br.com.alura.forum.controller.form.AtualizacaoTopicoForm;
 import br.com.alura.forum.controller.form.TopicoForm;
+import br.com.alura.forum.controller.form.TopicosEmLoteForm;
+import br.com.alura.forum.controller.paginacao.CursorDeTopico;
 import br.com.alura.forum.modelo.Topico;
 import br.com.alura.forum.repository.CursoRepository;
 import br.com.alura.forum.repository.TopicoRepository;
+import br.com.alura.forum.service.AlteracaoDeStatusEmLoteService;
+import br.com.alura.forum.service.CadastroEmLoteService;
+import br.com.alura.forum.service.DetalhesDoTopico;
+import br.com.alura.forum.service.DetalhesDoTopicoService;
+import br.com.alura.forum.service.EscritaCondicionalService;
+import br.com.alura.forum.service.ExportacaoTopicosService;
+import br.com.alura.forum.service.aovivo.TopicoCadastradoEvent;
+import br.com.alura.forum.service.aovivo.TopicosAoVivo;
+import br.com.alura.forum.service.busca.IndiceDeTopicos;
+import br.com.alura.forum.service.emalta.TopicosEmAlta;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.transaction.Transactional;
 import javax.validation.Valid;
+import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @RestController
 // @Controller - qdo usar esse precisa colocar ResponseBody no corpo acima do metodo.
@@ -34,12 +69,55 @@ public class TopicosController {
     @Autowired
     private CursoRepository cursoRepository;
 
+    @Autowired
+    private ExportacaoTopicosService exportacaoTopicosService;
+
+    @Autowired
+    private CadastroEmLoteService cadastroEmLoteService;
+
+    @Autowired
+    private AlteracaoDeStatusEmLoteService alteracaoDeStatusEmLoteService;
+
+    @Autowired
+    private EscritaCondicionalService escritaCondicionalService;
+
+    @Autowired
+    private DetalhesDoTopicoService detalhesDoTopicoService;
+
+    @Autowired
+    private IndiceDeTopicos indiceDeTopicos;
+
+    @Autowired
+    private TopicosAoVivo topicosAoVivo;
+
+    @Autowired
+    private TopicosEmAlta topicosEmAlta;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /*
+        Limites da página da listagem. O cliente pode pedir menos que o padrão, mas nunca mais que o máximo, para que
+        o custo de uma requisição não cresça junto com a tabela.
+     */
+    private static final int TAMANHO_PADRAO_PAGINA = 20;
+    private static final int TAMANHO_MAXIMO_PAGINA = 100;
+
+    private static final String MEDIA_TYPE_NDJSON = "application/x-ndjson";
+
+    private static final String ORDEM_CRIACAO = "criacao";
+    private static final String ORDEM_ATIVIDADE = "atividade";
+
     /*
         @ResponseBody Com RestController não e necessario essa anotação, aplicação ja vai entender
         que para ler o conteudo do metodo
      */
     @GetMapping // Verbos HTTPs
-    public List<TopicoDTO> lista(String nomeCurso) {
+    @EndpointCaro
+    public ResponseEntity<List<TopicoDTO>> lista(String nomeCurso, String cursor,
+                                                 @RequestParam(defaultValue = "" + TAMANHO_PADRAO_PAGINA) int tamanho,
+                                                 @RequestParam(defaultValue = ORDEM_CRIACAO) String ordem,
+                                                 WebRequest request) {
 
         /*
             Função do metodo DTO e para não trabalhar com entidade
@@ -48,20 +126,144 @@ public class TopicosController {
 
         /*
             Implementando para filtrar somente um item, por titulo, por exemplo
-            Se não tiver o nome do curso, ira retornar a lista toda, caso tenha
+            Se não tiver o nome do curso, ira retornar os tópicos de todos os cursos, caso tenha
             sera retornado somente o curso
          */
 
-        if (nomeCurso == null) {
-            // metodo findAll vai retornar a lista de todos os registros
-            List<Topico> topicos = topicoRepository.findAll();
+        /*
+            A lista e paginada por cursor: o corpo continua sendo a lista de TopicoDTO, e quando existe uma próxima
+            página o endereço dela vai no cabeçalho Link com rel="next", com o parâmetro cursor preenchido.
+            Buscamos um tópico a mais do que o tamanho da página so para saber se existe próxima página, sem count.
 
-            // converter faz a conversão de topico para topicoDTO
-            return TopicoDTO.converter(topicos);
+            A ordem padrão e a de criação (mais novos primeiro); com ordem=atividade vem primeiro o tópico com a
+            resposta mais recente.
+         */
+        boolean porAtividade = ORDEM_ATIVIDADE.equals(ordem);
+        if (!porAtividade && !ORDEM_CRIACAO.equals(ordem)) {
+            return ResponseEntity.badRequest().build();
+        }
+        CursorDeTopico posicao;
+        try {
+            posicao = CursorDeTopico.decodificar(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        /*
+            Com o nome do curso a listagem tem ETag, que vem da versão dos tópicos do curso. Se o cliente mandar o
+            If-None-Match com a versão atual, o checkNotModified ja preenche o 304 e nenhuma página e buscada. Senão ele
+            so coloca o cabeçalho ETag na resposta e a listagem segue normalmente.
+         */
+        if (nomeCurso != null) {
+            Long versao = cursoRepository.versaoDosTopicos(nomeCurso);
+            if (versao != null && request.checkNotModified(etag("curso", versao))) {
+                return null;
+            }
+        }
+
+        int limite = Math.max(1, Math.min(tamanho, TAMANHO_MAXIMO_PAGINA));
+        Pageable umAMais = PageRequest.of(0, limite + 1);
+
+        List<TopicoDTO> topicos;
+        if (porAtividade) {
+            topicos = buscarPorAtividade(nomeCurso, posicao, umAMais);
+        } else if (nomeCurso == null) {
+            topicos = posicao == null
+                    ? topicoRepository.primeiraPagina(umAMais)
+                    : topicoRepository.paginaApos(posicao.getMomento(), posicao.getId(), umAMais);
         } else {
-            List<Topico> topicos = topicoRepository.findByCursoNome(nomeCurso);
-            return TopicoDTO.converter(topicos);
+            topicos = posicao == null
+                    ? topicoRepository.primeiraPaginaPorCursoNome(nomeCurso, umAMais)
+                    : topicoRepository.paginaAposPorCursoNome(nomeCurso, posicao.getMomento(), posicao.getId(), umAMais);
+        }
+
+        // as consultas da listagem ja devolvem TopicoDTO, sem passar pela entidade Topico
+        if (topicos.size() <= limite) {
+            return ResponseEntity.ok(topicos);
+        }
+
+        List<TopicoDTO> pagina = topicos.subList(0, limite);
+        TopicoDTO ultimo = pagina.get(limite - 1);
+        String proximo = (porAtividade ? CursorDeTopico.porAtividade(ultimo) : CursorDeTopico.de(ultimo)).codificar();
+        URI proximaPagina = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("cursor", proximo)
+                .build().toUri();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.LINK, "<" + proximaPagina + ">; rel=\"next\"")
+                .body(pagina);
+    }
+
+    private List<TopicoDTO> buscarPorAtividade(String nomeCurso, CursorDeTopico posicao, Pageable umAMais) {
+        if (nomeCurso == null) {
+            return posicao == null
+                    ? topicoRepository.primeiraPaginaPorAtividade(umAMais)
+                    : topicoRepository.paginaAposPorAtividade(posicao.getMomento(), posicao.getId(), umAMais);
+        }
+        return posicao == null
+                ? topicoRepository.primeiraPaginaPorCursoNomeEAtividade(nomeCurso, umAMais)
+                : topicoRepository.paginaAposPorCursoNomeEAtividade(nomeCurso, posicao.getMomento(), posicao.getId(),
+                umAMais);
+    }
+
+    /*
+        Busca textual no titulo e na mensagem dos tópicos, do mais relevante para o menos relevante. Quem responde e o
+        indice invertido em memória, o banco so e consultado para carregar os tópicos da página encontrada.
+     */
+    @GetMapping("/busca")
+    @EndpointCaro
+    public List<TopicoDTO> buscar(@RequestParam String q, @RequestParam(defaultValue = "0") int pagina,
+                                  @RequestParam(defaultValue = "" + TAMANHO_PADRAO_PAGINA) int tamanho) {
+        int limite = Math.max(1, Math.min(tamanho, TAMANHO_MAXIMO_PAGINA));
+        List<Long> ids = indiceDeTopicos.buscar(q, Math.max(0, pagina), limite);
+        return naOrdem(ids);
+    }
+
+    /*
+        Os tópicos com mais respostas e visualizações recentes, de todos os cursos ou so do nomeCurso. O ranking e
+        mantido em memória a cada evento (TopicosEmAlta), aqui so lemos os primeiros e carregamos os tópicos deles.
+     */
+    @GetMapping("/em-alta")
+    public List<TopicoDTO> emAlta(String nomeCurso,
+                                  @RequestParam(defaultValue = "" + TAMANHO_PADRAO_PAGINA) int tamanho) {
+        int limite = Math.max(1, Math.min(tamanho, TAMANHO_MAXIMO_PAGINA));
+        List<Long> ids = topicosEmAlta.maisPontuados(nomeCurso, limite);
+        List<TopicoDTO> topicos = naOrdem(ids);
+        // um tópico que não veio foi apagado sem passar pelo ranking (um delete direto no banco)
+        if (topicos.size() < ids.size()) {
+            Set<Long> encontrados = topicos.stream().map(TopicoDTO::getId).collect(Collectors.toSet());
+            ids.stream().filter(id -> !encontrados.contains(id)).forEach(topicosEmAlta::remover);
         }
+        return topicos;
+    }
+
+    // o "in" não garante a ordem, então reorganizamos os tópicos na ordem do ranking
+    private List<TopicoDTO> naOrdem(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, TopicoDTO> porId = new HashMap<>();
+        topicoRepository.findResumosPorIds(ids).forEach(topico -> porId.put(topico.getId(), topico));
+        return ids.stream().map(porId::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    /*
+        Server-sent events com os tópicos novos do curso, para os painéis não precisarem consultar a listagem de
+        tempos em tempos. Cada tópico chega como um evento "topico" com o TopicoDTO em JSON.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestParam String nomeCurso) {
+        return topicosAoVivo.assinar(nomeCurso);
+    }
+
+    /*
+        Exportação completa dos tópicos em NDJSON, um TopicoDTO por linha. Diferente da lista, aqui não existe página:
+        o serviço escreve direto na resposta enquanto lê do banco, então a memória fica constante.
+     */
+    @GetMapping(value = "/export", produces = MEDIA_TYPE_NDJSON)
+    @EndpointCaro
+    public void exportar(HttpServletResponse response) throws IOException {
+        response.setContentType(MEDIA_TYPE_NDJSON);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        exportacaoTopicosService.exportar(response.getOutputStream());
     }
 
     /*
@@ -125,19 +327,81 @@ public class TopicosController {
          */
         URI uri = uriBuilder.path("/topicos/{id}").buildAndExpand(topico.getId()).toUri();
         // .buildAndExpand converte o ID para as {}
-        return ResponseEntity.created(uri).body(new TopicoDTO(topico));
+        TopicoDTO topicoDto = new TopicoDTO(topico);
+        // entregue aos assinantes do GET /topicos/stream so depois do commit
+        if (topico.getCurso() != null) {
+            eventPublisher.publishEvent(new TopicoCadastradoEvent(topico.getCurso().getNome(), topicoDto));
+        }
+        return ResponseEntity.created(uri).body(topicoDto);
+    }
+
+    /*
+        Cadastro de vários tópicos em uma requisição so, para importações. O corpo e {"topicos": [TopicoForm, ...]}
+        e cada item passa pelas mesmas validações do cadastro unitario. Devolve 201 com os tópicos criados.
+     */
+    @PostMapping("/lote")
+    @EndpointCaro
+    public ResponseEntity<List<TopicoDTO>> cadastrarEmLote(@RequestBody @Valid TopicosEmLoteForm form) {
+        List<TopicoDTO> cadastrados = cadastroEmLoteService.cadastrar(form.getTopicos());
+        return ResponseEntity.status(HttpStatus.CREATED).body(cadastrados);
+    }
+
+    /*
+        Moderação em massa: muda o status de todos os tópicos do filtro (curso, status atual, criados antes de uma
+        data), por exemplo para fechar os tópicos parados. Sem @Transactional aqui: o serviço abre uma transação por
+        lote de tópicos.
+     */
+    @PatchMapping("/status")
+    @EndpointCaro
+    public AlteracaoDeStatusEmLoteDTO alterarStatusEmLote(@RequestBody @Valid AlteracaoDeStatusEmLoteForm form) {
+        return alteracaoDeStatusEmLoteService.alterar(form);
+    }
+
+    /*
+        O detalhe em JSON, que e o caso comum (inclusive sem Accept), devolve os bytes que a carga ja serializou. Os
+        formatos binarios caem no mapeamento sem produces logo abaixo, e o conversor deles escreve o DTO.
+     */
+    @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> detalharEmJson(@PathVariable Long id, WebRequest request,
+                                                 HttpServletResponse response) {
+        return detalhar(id, request, response,
+                detalhes -> ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON_UTF8).body(detalhes.getJson()));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<DetalhesDoTopicoDTO> detalhar(@PathVariable Long id) {
+    public ResponseEntity<DetalhesDoTopicoDTO> detalharEmOutroFormato(@PathVariable Long id, WebRequest request,
+                                                                      HttpServletResponse response) {
+        return detalhar(id, request, response, detalhes -> ResponseEntity.ok(detalhes.getDto()));
+    }
+
+    // null quando o cliente ja tem a versão (304)
+    private <T> ResponseEntity<T> detalhar(Long id, WebRequest request, HttpServletResponse response,
+                                           Function<DetalhesDoTopico, ResponseEntity<T>> resposta) {
         /*
             @PathVariable, para dizer que é uma variável do path, da url. E aí o Spring por padrão vai associar.
             Ele sabe que é para pegar o que veio na url e jogar no parâmetro.
          */
-        Optional<Topico> topicoOptional = topicoRepository.findById(id);
-        if (topicoOptional.isPresent()) {
-            return ResponseEntity.ok(new DetalhesDoTopicoDTO(topicoOptional.get()));
-            //topico.get():  método get, que é para pegar o método get que é para pegar o tópico de fato que está dentro do optional
+        /*
+            Antes de montar o DTO olhamos so a versão do tópico: se o cliente ja tem essa versão (If-None-Match), a
+            resposta e um 304 sem corpo, sem carregar as respostas e sem serializar nada.
+         */
+        Long versao = topicoRepository.versaoDoTopico(id);
+        if (versao == null) {
+            return ResponseEntity.notFound().build();
+        }
+        // o 304 tambem e uma visualização, so que de quem ja tinha o tópico
+        topicosEmAlta.visualizado(id);
+        if (request.checkNotModified(etag("topico", versao))) {
+            return null;
+        }
+
+        // requisições simultaneas do mesmo tópico e versão dividem uma unica carga, ver DetalhesDoTopicoService
+        Optional<DetalhesDoTopico> detalhes = detalhesDoTopicoService.carregar(id, versao);
+        if (detalhes.isPresent()) {
+            // o checkNotModified ja colocou o ETag da versão lida antes; o da resposta e o da versão que a carga leu
+            response.setHeader(HttpHeaders.ETAG, etag("topico", detalhes.get().getVersao()));
+            return resposta.apply(detalhes.get());
+            //detalhes.get():  método get, que é para pegar o DTO de fato que está dentro do optional
         }
         return ResponseEntity.notFound().build();
     }
@@ -175,9 +439,42 @@ public class TopicosController {
         return ResponseEntity.notFound().build();
     }
 
+    /*
+        Alteração sem leitura prévia: o cliente manda no If-Match o ETag que recebeu no detalhar, e o titulo e a
+        mensagem são gravados com um unico update condicional na versão desse ETag. A resposta e 204 com o novo ETag,
+        404 se o tópico não existe, 409 se ele foi alterado depois que o cliente o leu e 428 sem If-Match.
+     */
+    @PatchMapping("/{id}")
+    public ResponseEntity<Void> alterar(@PathVariable Long id, @RequestBody @Valid AtualizacaoTopicoForm form,
+                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        if (ifMatch == null) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_REQUIRED).build();
+        }
+        Long versao = versaoDoEtag(ifMatch);
+        if (versao == null || escritaCondicionalService.atualizar(id, versao, form) == 0) {
+            return semAlteracao(id);
+        }
+        return ResponseEntity.noContent().eTag(etag("topico", versao + 1)).build();
+    }
+
     @DeleteMapping("/{id}")
     @Transactional
-    public ResponseEntity remover(@PathVariable long id) {
+    public ResponseEntity remover(@PathVariable long id,
+                                  @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        // com If-Match a remoção e um delete condicional so, com as mesmas respostas do PATCH
+        if (ifMatch != null) {
+            Long versao = versaoDoEtag(ifMatch);
+            if (versao == null || escritaCondicionalService.remover(id, versao) == 0) {
+                /*
+                    O serviço roda dentro desta transação: sem marcar também a daqui, o commit no fim do metodo
+                    desfaria os comandos do serviço lançando UnexpectedRollbackException, em vez do 404 ou 409.
+                 */
+                TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+                return semAlteracao(id);
+            }
+            return ResponseEntity.ok().build();
+        }
+
         Optional<Topico> optionalTopico = topicoRepository.findById(id);
 
         if (optionalTopico.isPresent()) {
@@ -186,4 +483,30 @@ public class TopicosController {
         }
         return ResponseEntity.notFound().build();
     }
+
+    // ETag forte: o mesmo valor so aparece para o mesmo conteúdo
+    private static String etag(String recurso, Long versao) {
+        return "\"" + recurso + "-" + versao + "\"";
+    }
+
+    // versão de um ETag de tópico recebido no If-Match, ou null se ele não e um ETag de tópico
+    private static Long versaoDoEtag(String etag) {
+        String prefixo = "\"topico-";
+        if (!etag.startsWith(prefixo) || !etag.endsWith("\"") || etag.length() <= prefixo.length() + 1) {
+            return null;
+        }
+        try {
+            return Long.valueOf(etag.substring(prefixo.length(), etag.length() - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // a escrita condicional não afetou nenhuma linha: so aqui vale a pena ler para saber o motivo
+    private <T> ResponseEntity<T> semAlteracao(Long id) {
+        if (topicoRepository.versaoDoTopico(id) == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
 }
@@ -0,0 +1,21 @@
+package br.com.alura.forum.controller.dto;
+
+// resultado da alteração de status em lote: quantos tópicos mudaram e em quantas transações
+public class AlteracaoDeStatusEmLoteDTO {
+
+    private final long alterados;
+    private final int transacoes;
+
+    public AlteracaoDeStatusEmLoteDTO(long alterados, int transacoes) {
+        this.alterados = alterados;
+        this.transacoes = transacoes;
+    }
+
+    public long getAlterados() {
+        return alterados;
+    }
+
+    public int getTransacoes() {
+        return transacoes;
+    }
+}
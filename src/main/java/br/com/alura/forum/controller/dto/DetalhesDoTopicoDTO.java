@@ -1,13 +1,15 @@
 package br.com.alura.forum.controller.dto;
 
+import br.com.alura.forum.modelo.Resposta;
 import br.com.alura.forum.modelo.StatusTopico;
 import br.com.alura.forum.modelo.Topico;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
+@JsonSerialize(using = DetalhesDoTopicoDTOSerializer.class)
 public class DetalhesDoTopicoDTO {
 
     private long id;
@@ -25,8 +27,10 @@ public class DetalhesDoTopicoDTO {
         this.dataCriacao = topico.getDataCriacao();
         this.nomeAutor = topico.getAutor().getNome();
         this.status = topico.getStatus();
-        this.respostas = new ArrayList<>();
-        this.respostas.addAll(topico.getRespostas().stream().map(RespostaDTO::new).collect(Collectors.toList()));
+        this.respostas = new ArrayList<>(topico.getRespostas().size());
+        for (Resposta resposta : topico.getRespostas()) {
+            this.respostas.add(new RespostaDTO(resposta));
+        }
     }
 
     public long getId() {
@@ -0,0 +1,60 @@
+package br.com.alura.forum.controller.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.List;
+
+/*
+    Serialização do DetalhesDoTopicoDTO escrita a mão, como a do TopicoDTOSerializer. O status sai pelo name() do
+    enum, que e o padrão do Jackson (a API não liga o WRITE_ENUMS_USING_TO_STRING).
+ */
+public class DetalhesDoTopicoDTOSerializer extends StdSerializer<DetalhesDoTopicoDTO> {
+
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString TITULO = new SerializedString("titulo");
+    private static final SerializedString MENSAGEM = new SerializedString("mensagem");
+    private static final SerializedString DATA_CRIACAO = new SerializedString("dataCriacao");
+    private static final SerializedString NOME_AUTOR = new SerializedString("nomeAutor");
+    private static final SerializedString STATUS = new SerializedString("status");
+    private static final SerializedString RESPOSTAS = new SerializedString("respostas");
+
+    private final RespostaDTOSerializer respostaSerializer = new RespostaDTOSerializer();
+
+    public DetalhesDoTopicoDTOSerializer() {
+        super(DetalhesDoTopicoDTO.class);
+    }
+
+    @Override
+    public void serialize(DetalhesDoTopicoDTO detalhes, JsonGenerator gerador, SerializerProvider provider)
+            throws IOException {
+        gerador.writeStartObject(detalhes);
+        gerador.writeFieldName(ID);
+        gerador.writeNumber(detalhes.getId());
+        gerador.writeFieldName(TITULO);
+        gerador.writeString(detalhes.getTitulo());
+        gerador.writeFieldName(MENSAGEM);
+        gerador.writeString(detalhes.getMensagem());
+        gerador.writeFieldName(DATA_CRIACAO);
+        EscritaDeData.escrever(detalhes.getDataCriacao(), gerador, provider);
+        gerador.writeFieldName(NOME_AUTOR);
+        gerador.writeString(detalhes.getNomeAutor());
+        gerador.writeFieldName(STATUS);
+        gerador.writeString(detalhes.getStatus() == null ? null : detalhes.getStatus().name());
+        gerador.writeFieldName(RESPOSTAS);
+        List<RespostaDTO> respostas = detalhes.getRespostas();
+        if (respostas == null) {
+            gerador.writeNull();
+        } else {
+            gerador.writeStartArray(respostas.size());
+            for (RespostaDTO resposta : respostas) {
+                respostaSerializer.serialize(resposta, gerador, provider);
+            }
+            gerador.writeEndArray();
+        }
+        gerador.writeEndObject();
+    }
+}
@@ -0,0 +1,89 @@
+package br.com.alura.forum.controller.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/*
+    Escreve um LocalDateTime exatamente como o LocalDateTimeSerializer do jackson-datatype-jsr310 escreveria com o
+    formato padrão (DateTimeFormatter.ISO_LOCAL_DATE_TIME: segundos sempre presentes, fração sem os zeros do final),
+    mas sem passar pelo DateTimeFormatter, que aloca varios objetos a cada data.
+
+    Cada thread tem o seu buffer de caracteres e lembra a ultima data formatada: num tópico sem respostas a
+    ultimaAtividade e igual a dataCriacao, e a segunda sai do buffer sem formatar de novo.
+
+    Quando o mapper escreve datas como timestamp (os formatos binarios, ver FormatosBinariosConfiguration) ou o ano
+    não cabe em 4 digitos, a escrita e delegada ao Jackson.
+ */
+final class EscritaDeData {
+
+    private static final ThreadLocal<EscritaDeData> POR_THREAD = ThreadLocal.withInitial(EscritaDeData::new);
+
+    // yyyy-MM-ddTHH:mm:ss.nnnnnnnnn
+    private final char[] buffer = new char[29];
+    private int tamanho;
+    private LocalDateTime ultima;
+
+    private EscritaDeData() {
+    }
+
+    static void escrever(LocalDateTime data, JsonGenerator gerador, SerializerProvider provider) throws IOException {
+        if (data == null) {
+            gerador.writeNull();
+            return;
+        }
+        if (provider.isEnabled(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)) {
+            provider.defaultSerializeValue(data, gerador);
+            return;
+        }
+        int ano = data.getYear();
+        if (ano < 0 || ano > 9999) {
+            gerador.writeString(data.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+            return;
+        }
+
+        EscritaDeData escrita = POR_THREAD.get();
+        if (!data.equals(escrita.ultima)) {
+            escrita.formatar(data);
+        }
+        gerador.writeString(escrita.buffer, 0, escrita.tamanho);
+    }
+
+    private void formatar(LocalDateTime data) {
+        digitos(data.getYear(), 0, 4);
+        buffer[4] = '-';
+        digitos(data.getMonthValue(), 5, 2);
+        buffer[7] = '-';
+        digitos(data.getDayOfMonth(), 8, 2);
+        buffer[10] = 'T';
+        digitos(data.getHour(), 11, 2);
+        buffer[13] = ':';
+        digitos(data.getMinute(), 14, 2);
+        buffer[16] = ':';
+        digitos(data.getSecond(), 17, 2);
+        tamanho = 19;
+
+        int nano = data.getNano();
+        if (nano > 0) {
+            buffer[19] = '.';
+            digitos(nano, 20, 9);
+            tamanho = 29;
+            while (buffer[tamanho - 1] == '0') {
+                tamanho--;
+            }
+        }
+        ultima = data;
+    }
+
+    // escreve o valor com a quantidade de digitos pedida, completando com zeros a esquerda
+    private void digitos(int valor, int inicio, int quantidade) {
+        for (int i = inicio + quantidade - 1; i >= inicio; i--) {
+            buffer[i] = (char) ('0' + valor % 10);
+            valor /= 10;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package br.com.alura.forum.controller.dto;
+
+import java.util.List;
+
+/*
+    Resposta do GET /estatisticas: o total de tópicos e a mesma contagem aberta por curso, por status e por dia de
+    criação (dias sem tópicos ficam de fora).
+ */
+public class EstatisticasDTO {
+
+    private final long total;
+    private final List<TopicosPorCursoDTO> porCurso;
+    private final List<TopicosPorStatusDTO> porStatus;
+    private final List<TopicosPorDiaDTO> porDia;
+
+    public EstatisticasDTO(List<TopicosPorCursoDTO> porCurso, List<TopicosPorStatusDTO> porStatus,
+                           List<TopicosPorDiaDTO> porDia) {
+        this.total = porStatus.stream().mapToLong(TopicosPorStatusDTO::getQuantidade).sum();
+        this.porCurso = porCurso;
+        this.porStatus = porStatus;
+        this.porDia = porDia;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public List<TopicosPorCursoDTO> getPorCurso() {
+        return porCurso;
+    }
+
+    public List<TopicosPorStatusDTO> getPorStatus() {
+        return porStatus;
+    }
+
+    public List<TopicosPorDiaDTO> getPorDia() {
+        return porDia;
+    }
+}
@@ -2,9 +2,11 @@ package br.com.alura.forum.controller.dto;
 
 import br.com.alura.forum.modelo.Resposta;
 import br.com.alura.forum.modelo.Topico;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 import java.time.LocalDateTime;
 
+@JsonSerialize(using = RespostaDTOSerializer.class)
 public class RespostaDTO {
 
     private Long id;
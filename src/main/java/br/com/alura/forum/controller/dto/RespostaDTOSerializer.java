@@ -0,0 +1,42 @@
+package br.com.alura.forum.controller.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/*
+    Serialização do RespostaDTO escrita a mão, como a do TopicoDTOSerializer. Também e usada direto pelo
+    DetalhesDoTopicoDTOSerializer para a lista de respostas do detalhe.
+ */
+public class RespostaDTOSerializer extends StdSerializer<RespostaDTO> {
+
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString MENSAGEM = new SerializedString("mensagem");
+    private static final SerializedString DATA_CRIACAO = new SerializedString("dataCriacao");
+    private static final SerializedString NOME_AUTOR = new SerializedString("nomeAutor");
+
+    public RespostaDTOSerializer() {
+        super(RespostaDTO.class);
+    }
+
+    @Override
+    public void serialize(RespostaDTO resposta, JsonGenerator gerador, SerializerProvider provider) throws IOException {
+        gerador.writeStartObject(resposta);
+        gerador.writeFieldName(ID);
+        if (resposta.getId() == null) {
+            gerador.writeNull();
+        } else {
+            gerador.writeNumber(resposta.getId());
+        }
+        gerador.writeFieldName(MENSAGEM);
+        gerador.writeString(resposta.getMensagem());
+        gerador.writeFieldName(DATA_CRIACAO);
+        EscritaDeData.escrever(resposta.getDataCriacao(), gerador, provider);
+        gerador.writeFieldName(NOME_AUTOR);
+        gerador.writeString(resposta.getNomeAutor());
+        gerador.writeEndObject();
+    }
+}
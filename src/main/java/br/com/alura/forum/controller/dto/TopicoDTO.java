@@ -1,23 +1,43 @@
 package br.com.alura.forum.controller.dto;
 
 import br.com.alura.forum.modelo.Topico;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
 
+@JsonSerialize(using = TopicoDTOSerializer.class)
 public class TopicoDTO {
 
     private long id;
     private String titulo;
     private String mensagem;
     private LocalDateTime dataCriacao;
+    private int quantidadeRespostas;
+    private LocalDateTime ultimaAtividade;
 
     public TopicoDTO(Topico topico) {
         this.id = topico.getId();
         this.titulo = topico.getTitulo();
         this.mensagem = topico.getMensagem();
         this.dataCriacao = topico.getDataCriacao();
+        this.quantidadeRespostas = topico.getQuantidadeRespostas();
+        this.ultimaAtividade = topico.getUltimaAtividade();
+    }
+
+    /*
+        Construtor usado pelas consultas com "select new" do TopicoRepository, que ja devolvem so as colunas do DTO
+        sem carregar a entidade Topico.
+     */
+    public TopicoDTO(Long id, String titulo, String mensagem, LocalDateTime dataCriacao, int quantidadeRespostas,
+                     LocalDateTime ultimaAtividade) {
+        this.id = id;
+        this.titulo = titulo;
+        this.mensagem = mensagem;
+        this.dataCriacao = dataCriacao;
+        this.quantidadeRespostas = quantidadeRespostas;
+        this.ultimaAtividade = ultimaAtividade;
     }
 
     public static List<TopicoDTO> converter(List<Topico> topicos) {
@@ -40,5 +60,13 @@ public class TopicoDTO {
         return dataCriacao;
     }
 
+    public int getQuantidadeRespostas() {
+        return quantidadeRespostas;
+    }
+
+    public LocalDateTime getUltimaAtividade() {
+        return ultimaAtividade;
+    }
+
 
 }
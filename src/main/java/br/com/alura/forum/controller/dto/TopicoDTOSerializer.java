@@ -0,0 +1,47 @@
+package br.com.alura.forum.controller.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/*
+    Serialização do TopicoDTO escrita a mão, no lugar da serialização por reflexão do Jackson, que aparecia nos
+    profiles das listagens. Os nomes dos campos já ficam codificados (SerializedString) e as datas são escritas pela
+    EscritaDeData. A saida e a mesma, byte a byte, da serialização padrão: mesmos campos, na mesma ordem.
+
+    Um campo novo no TopicoDTO precisa entrar aqui também, senão ele não sai na resposta.
+ */
+public class TopicoDTOSerializer extends StdSerializer<TopicoDTO> {
+
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString TITULO = new SerializedString("titulo");
+    private static final SerializedString MENSAGEM = new SerializedString("mensagem");
+    private static final SerializedString DATA_CRIACAO = new SerializedString("dataCriacao");
+    private static final SerializedString QUANTIDADE_RESPOSTAS = new SerializedString("quantidadeRespostas");
+    private static final SerializedString ULTIMA_ATIVIDADE = new SerializedString("ultimaAtividade");
+
+    public TopicoDTOSerializer() {
+        super(TopicoDTO.class);
+    }
+
+    @Override
+    public void serialize(TopicoDTO topico, JsonGenerator gerador, SerializerProvider provider) throws IOException {
+        gerador.writeStartObject(topico);
+        gerador.writeFieldName(ID);
+        gerador.writeNumber(topico.getId());
+        gerador.writeFieldName(TITULO);
+        gerador.writeString(topico.getTitulo());
+        gerador.writeFieldName(MENSAGEM);
+        gerador.writeString(topico.getMensagem());
+        gerador.writeFieldName(DATA_CRIACAO);
+        EscritaDeData.escrever(topico.getDataCriacao(), gerador, provider);
+        gerador.writeFieldName(QUANTIDADE_RESPOSTAS);
+        gerador.writeNumber(topico.getQuantidadeRespostas());
+        gerador.writeFieldName(ULTIMA_ATIVIDADE);
+        EscritaDeData.escrever(topico.getUltimaAtividade(), gerador, provider);
+        gerador.writeEndObject();
+    }
+}
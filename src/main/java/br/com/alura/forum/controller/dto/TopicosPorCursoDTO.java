@@ -0,0 +1,21 @@
+package br.com.alura.forum.controller.dto;
+
+// quantidade de tópicos de um curso no GET /estatisticas; curso null são os tópicos sem curso
+public class TopicosPorCursoDTO {
+
+    private final String curso;
+    private final long quantidade;
+
+    public TopicosPorCursoDTO(String curso, Long quantidade) {
+        this.curso = curso;
+        this.quantidade = quantidade;
+    }
+
+    public String getCurso() {
+        return curso;
+    }
+
+    public long getQuantidade() {
+        return quantidade;
+    }
+}
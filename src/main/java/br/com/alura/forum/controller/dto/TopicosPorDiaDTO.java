@@ -0,0 +1,23 @@
+package br.com.alura.forum.controller.dto;
+
+import java.time.LocalDate;
+
+// quantidade de tópicos criados em um dia no GET /estatisticas
+public class TopicosPorDiaDTO {
+
+    private final LocalDate dia;
+    private final long quantidade;
+
+    public TopicosPorDiaDTO(LocalDate dia, Long quantidade) {
+        this.dia = dia;
+        this.quantidade = quantidade;
+    }
+
+    public LocalDate getDia() {
+        return dia;
+    }
+
+    public long getQuantidade() {
+        return quantidade;
+    }
+}
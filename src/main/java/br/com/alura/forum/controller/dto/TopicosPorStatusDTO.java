@@ -0,0 +1,23 @@
+package br.com.alura.forum.controller.dto;
+
+import br.com.alura.forum.modelo.StatusTopico;
+
+// quantidade de tópicos em um status no GET /estatisticas
+public class TopicosPorStatusDTO {
+
+    private final StatusTopico status;
+    private final long quantidade;
+
+    public TopicosPorStatusDTO(StatusTopico status, Long quantidade) {
+        this.status = status;
+        this.quantidade = quantidade;
+    }
+
+    public StatusTopico getStatus() {
+        return status;
+    }
+
+    public long getQuantidade() {
+        return quantidade;
+    }
+}
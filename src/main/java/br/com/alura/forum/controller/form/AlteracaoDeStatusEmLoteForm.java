@@ -0,0 +1,51 @@
+package br.com.alura.forum.controller.form;
+
+import br.com.alura.forum.modelo.StatusTopico;
+
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+
+/*
+    Form da alteração de status em lote: o novo status e o filtro dos tópicos. Os filtros são opcionais e se somam
+    (curso E status atual E criados antes da data); um filtro não informado não restringe nada.
+ */
+public class AlteracaoDeStatusEmLoteForm {
+
+    @NotNull
+    private StatusTopico novoStatus;
+    private String nomeCurso;
+    private StatusTopico statusAtual;
+    private LocalDateTime criadosAntesDe;
+
+    public StatusTopico getNovoStatus() {
+        return novoStatus;
+    }
+
+    public void setNovoStatus(StatusTopico novoStatus) {
+        this.novoStatus = novoStatus;
+    }
+
+    public String getNomeCurso() {
+        return nomeCurso;
+    }
+
+    public void setNomeCurso(String nomeCurso) {
+        this.nomeCurso = nomeCurso;
+    }
+
+    public StatusTopico getStatusAtual() {
+        return statusAtual;
+    }
+
+    public void setStatusAtual(StatusTopico statusAtual) {
+        this.statusAtual = statusAtual;
+    }
+
+    public LocalDateTime getCriadosAntesDe() {
+        return criadosAntesDe;
+    }
+
+    public void setCriadosAntesDe(LocalDateTime criadosAntesDe) {
+        this.criadosAntesDe = criadosAntesDe;
+    }
+}
@@ -8,6 +8,7 @@ import org.hibernate.validator.constraints.Length;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
+import java.util.Map;
 
 public class TopicoForm {
 
@@ -73,4 +74,9 @@ public class TopicoForm {
         Curso curso = cursoRepository.findByNome(nomeCurso);
         return new Topico(titulo, mensagem, curso);
     }
+
+    // versão do cadastro em lote, onde os cursos ja foram buscados todos de uma vez
+    public Topico converter(Map<String, Curso> cursosPorNome) {
+        return new Topico(titulo, mensagem, cursosPorNome.get(nomeCurso));
+    }
 }
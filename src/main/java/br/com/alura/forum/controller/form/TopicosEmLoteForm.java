@@ -0,0 +1,30 @@
+package br.com.alura.forum.controller.form;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+/*
+    Form do cadastro em lote. A lista fica dentro de um objeto para que o @Valid do controller valide cada TopicoForm
+    (com o @Valid no atributo), e os erros voltem pelo ErroDeValidacaoHandler com o campo "topicos[i].titulo".
+ */
+public class TopicosEmLoteForm {
+
+    public static final int TAMANHO_MAXIMO_LOTE = 10000;
+
+    @NotNull
+    @NotEmpty
+    @Size(max = TAMANHO_MAXIMO_LOTE)
+    @Valid
+    private List<TopicoForm> topicos;
+
+    public List<TopicoForm> getTopicos() {
+        return topicos;
+    }
+
+    public void setTopicos(List<TopicoForm> topicos) {
+        this.topicos = topicos;
+    }
+}
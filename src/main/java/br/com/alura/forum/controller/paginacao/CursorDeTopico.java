@@ -0,0 +1,76 @@
+package br.com.alura.forum.controller.paginacao;
+
+import br.com.alura.forum.controller.dto.TopicoDTO;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/*
+    Cursor da paginação por chave (keyset) da listagem de tópicos.
+
+    Em vez de pedir "a página 500" (que obriga o banco a percorrer e descartar todas as linhas anteriores com OFFSET),
+    o cliente devolve a posição do último tópico que recebeu: a data pela qual a lista e ordenada (dataCriacao ou
+    ultimaAtividade) e o id dele. A próxima página começa exatamente depois desse par, então uma página profunda custa o
+    mesmo que a primeira.
+
+    O token é so o par "data|id" em Base64 url-safe, para o cliente tratar como um valor opaco.
+ */
+public class CursorDeTopico {
+
+    private static final String SEPARADOR = "|";
+
+    private final LocalDateTime momento;
+    private final Long id;
+
+    public CursorDeTopico(LocalDateTime momento, Long id) {
+        this.momento = momento;
+        this.id = id;
+    }
+
+    public static CursorDeTopico de(TopicoDTO topico) {
+        return new CursorDeTopico(topico.getDataCriacao(), topico.getId());
+    }
+
+    // cursor da listagem ordenada por atividade
+    public static CursorDeTopico porAtividade(TopicoDTO topico) {
+        return new CursorDeTopico(topico.getUltimaAtividade(), topico.getId());
+    }
+
+    /*
+        Devolve null quando o token não foi enviado (primeira página) e lança IllegalArgumentException quando o token
+        veio, mas não e um cursor valido - o controller transforma isso em 400.
+     */
+    public static CursorDeTopico decodificar(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            String valor = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int posicao = valor.lastIndexOf(SEPARADOR);
+            if (posicao < 0) {
+                throw new IllegalArgumentException("Cursor invalido: " + token);
+            }
+            LocalDateTime momento = LocalDateTime.parse(valor.substring(0, posicao));
+            Long id = Long.valueOf(valor.substring(posicao + 1));
+            return new CursorDeTopico(momento, id);
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            // NumberFormatException tambem e uma IllegalArgumentException
+            throw new IllegalArgumentException("Cursor invalido: " + token, e);
+        }
+    }
+
+    public String codificar() {
+        String valor = momento + SEPARADOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(valor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public LocalDateTime getMomento() {
+        return momento;
+    }
+
+    public Long getId() {
+        return id;
+    }
+}
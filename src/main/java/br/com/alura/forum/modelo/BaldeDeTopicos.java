@@ -0,0 +1,82 @@
+package br.com.alura.forum.modelo;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/*
+    Chave de uma linha das estatisticas: os tópicos de um curso, num status, criados num dia. Tópico sem curso conta
+    no curso SEM_CURSO, porque a coluna faz parte da chave primaria e não pode ser nula.
+ */
+@Embeddable
+public class BaldeDeTopicos implements Serializable {
+
+    public static final long SEM_CURSO = 0;
+
+    @Column(name = "curso_id")
+    private Long cursoId;
+    @Enumerated(EnumType.STRING)
+    private StatusTopico status;
+    private LocalDate dia;
+
+    protected BaldeDeTopicos() {
+    }
+
+    // usado tambem pelo "select new" do TopicoRepository
+    public BaldeDeTopicos(Long cursoId, StatusTopico status, LocalDateTime dataCriacao) {
+        this.cursoId = cursoId == null ? SEM_CURSO : cursoId;
+        this.status = status;
+        this.dia = dataCriacao.toLocalDate();
+    }
+
+    // o balde em que o tópico conta agora, ou null se falta status ou data para contar
+    static BaldeDeTopicos de(Topico topico) {
+        if (topico.getStatus() == null || topico.getDataCriacao() == null) {
+            return null;
+        }
+        Curso curso = topico.getCurso();
+        return new BaldeDeTopicos(curso == null ? null : curso.getId(), topico.getStatus(), topico.getDataCriacao());
+    }
+
+    public BaldeDeTopicos comStatus(StatusTopico status) {
+        BaldeDeTopicos balde = new BaldeDeTopicos();
+        balde.cursoId = cursoId;
+        balde.status = status;
+        balde.dia = dia;
+        return balde;
+    }
+
+    public Long getCursoId() {
+        return cursoId;
+    }
+
+    public StatusTopico getStatus() {
+        return status;
+    }
+
+    public LocalDate getDia() {
+        return dia;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BaldeDeTopicos)) {
+            return false;
+        }
+        BaldeDeTopicos balde = (BaldeDeTopicos) o;
+        return cursoId.equals(balde.cursoId) && status == balde.status && dia.equals(balde.dia);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(cursoId, status, dia);
+    }
+}
@@ -1,11 +1,19 @@
 package br.com.alura.forum.modelo;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 
 @Entity
+// cache de segundo nivel do Hibernate: os cursos quase não mudam e são lidos em quase toda requisição
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Curso {
 
 	@Id
@@ -13,6 +21,15 @@ public class Curso {
 	private Long id;
 	private String nome;
 	private String categoria;
+	/*
+		Versão da listagem de tópicos do curso, incrementada pelo ListagemDoCursoListener sempre que um tópico do curso
+		e criado, alterado ou removido. E dela que sai o ETag do GET /topicos?nomeCurso=...
+		O Hibernate nunca grava essa coluna (insertable/updatable false) e nem sabe quando ela muda: o update e feito
+		por JDBC, para não invalidar o cache de segundo nivel dos cursos a cada escrita de tópico. Por isso não existe
+		getter: o valor de um Curso em memória (ou no cache) pode estar velho, a versão e lida sempre do banco.
+	 */
+	@Column(insertable = false, updatable = false, columnDefinition = "bigint default 0 not null")
+	private Long versaoTopicos;
 
 	@Override
 	public int hashCode() {
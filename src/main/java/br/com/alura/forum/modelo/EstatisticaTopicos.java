@@ -0,0 +1,29 @@
+package br.com.alura.forum.modelo;
+
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+
+/*
+    Quantos tópicos existem em cada BaldeDeTopicos (curso, status e dia de criação). E um resumo mantido a cada
+    escrita de tópico pelo EstatisticasDeTopicos, para o GET /estatisticas somar baldes em vez de contar tópicos.
+
+    O Hibernate so le esta tabela: os incrementos são feitos por JDBC, no EstatisticaTopicosRepositoryImpl.
+ */
+@Entity
+@Immutable
+public class EstatisticaTopicos {
+
+    @EmbeddedId
+    private BaldeDeTopicos balde;
+    private long quantidade;
+
+    public BaldeDeTopicos getBalde() {
+        return balde;
+    }
+
+    public long getQuantidade() {
+        return quantidade;
+    }
+}
@@ -1,9 +1,14 @@
 package br.com.alura.forum.modelo;
 
+import br.com.alura.forum.service.ContadoresDeRespostasListener;
+import br.com.alura.forum.service.emalta.RespostasEmAltaListener;
+
 import javax.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
+// cada resposta nova conta nos contadores do tópico e no ranking do GET /topicos/em-alta
+@EntityListeners({ContadoresDeRespostasListener.class, RespostasEmAltaListener.class})
 public class Resposta {
 
 	@Id
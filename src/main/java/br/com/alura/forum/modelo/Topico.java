@@ -1,18 +1,36 @@
 package br.com.alura.forum.modelo;
 
+import br.com.alura.forum.service.ListagemDoCursoListener;
+import br.com.alura.forum.service.busca.IndiceDeTopicosListener;
+import br.com.alura.forum.service.emalta.TopicosEmAltaListener;
+import br.com.alura.forum.service.estatisticas.EstatisticasDeTopicosListener;
+
 import javax.persistence.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
 @Entity
+// a tabela e os indices das listagens vem das migrações do Flyway (db/migration/V1__esquema_inicial.sql)
+@EntityListeners({IndiceDeTopicosListener.class, ListagemDoCursoListener.class, EstatisticasDeTopicosListener.class,
+        TopicosEmAltaListener.class})
 public class Topico {
 
+    /*
+        Com IDENTITY o Hibernate precisa executar cada INSERT na hora para descobrir o id, o que impede o batch do JDBC.
+        Com uma sequence "pooled" ele reserva ALOCACAO_IDS ids por ida ao banco e pode mandar os INSERTs em lote.
+     */
+    public static final int ALOCACAO_IDS = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "topico_seq")
+    @SequenceGenerator(name = "topico_seq", sequenceName = "topico_seq", allocationSize = ALOCACAO_IDS)
     private Long id;
     private String titulo;
     private String mensagem;
+    // dataCriacao e ultimaAtividade são as ordens dos cursores da listagem, então nunca ficam nulas
+    @Column(nullable = false)
     private LocalDateTime dataCriacao = LocalDateTime.now();
     // O atributo Status e um Enum, portanto queremos que grave no banco o status em vez da ordem
     @Enumerated(EnumType.STRING)
@@ -23,6 +41,34 @@ public class Topico {
     private Curso curso;
     @OneToMany(mappedBy = "topico") // tem que passar a propriedade mappedBy para não achar que e um novo mapeamento
     private List<Resposta> respostas = new ArrayList<>();
+    /*
+        Versão do tópico, controlada pelo Hibernate: sobe a cada alteração do tópico. Quando uma resposta e gravada ou
+        removida quem sobe e o ContadoresDeRespostas, junto com os contadores. E dela que sai o ETag do
+        GET /topicos/{id}.
+     */
+    @Version
+    private Long versao;
+    /*
+        Contadores desnormalizados das respostas, para a listagem não precisar carregar a coleção respostas nem fazer
+        um GROUP BY em Resposta. No banco eles so mudam pelo update atomico do ContadoresDeRespostas, no commit de
+        cada transação que grava ou remove respostas, então duas respostas ao mesmo tempo não perdem uma contagem nem
+        entram em conflito de versão; por isso não são updatable. O adicionarResposta e o removerResposta so
+        acompanham os valores em memória. O ReparoDeContadoresService recalcula os dois a partir das respostas.
+     */
+    @Column(columnDefinition = "integer default 0 not null", updatable = false)
+    private int quantidadeRespostas;
+    // data da resposta mais recente, ou a do proprio tópico enquanto ele não tem respostas
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime ultimaAtividade = dataCriacao;
+
+    /*
+        Balde das estatisticas (curso, status e dia) em que o tópico esta contado no banco, lembrado sempre que o
+        tópico e lido ou gravado. O EstatisticasDeTopicosListener compara com o balde atual depois de um update para
+        mover a contagem quando o status (ou o curso) muda. Os listeners rodam antes deste callback, então no
+        @PostUpdate deles o valor ainda e o anterior.
+     */
+    @Transient
+    private BaldeDeTopicos baldeContado;
 
     public Topico() {
     }
@@ -122,4 +168,54 @@ public class Topico {
         this.respostas = respostas;
     }
 
+    // a coleção e lazy e inversa, então o add não a carrega: o Hibernate so guarda a resposta para o flush
+    public void adicionarResposta(Resposta resposta) {
+        resposta.setTopico(this);
+        this.respostas.add(resposta);
+        this.quantidadeRespostas++;
+        if (ultimaAtividade == null || resposta.getDataCriacao().isAfter(ultimaAtividade)) {
+            this.ultimaAtividade = resposta.getDataCriacao();
+        }
+    }
+
+    /*
+        O remove precisa da coleção carregada, então os dois valores saem das respostas que sobraram. A resposta em si
+        continua precisando ser removida pelo EntityManager.
+     */
+    public void removerResposta(Resposta resposta) {
+        this.respostas.remove(resposta);
+        this.quantidadeRespostas = respostas.size();
+        this.ultimaAtividade = respostas.stream()
+                .map(Resposta::getDataCriacao)
+                .max(Comparator.naturalOrder())
+                .orElse(dataCriacao);
+    }
+
+    public int getQuantidadeRespostas() {
+        return quantidadeRespostas;
+    }
+
+    public LocalDateTime getUltimaAtividade() {
+        return ultimaAtividade;
+    }
+
+    public Long getVersao() {
+        return versao;
+    }
+
+    public BaldeDeTopicos getBalde() {
+        return BaldeDeTopicos.de(this);
+    }
+
+    public BaldeDeTopicos getBaldeContado() {
+        return baldeContado;
+    }
+
+    @PostLoad
+    @PostPersist
+    @PostUpdate
+    void lembrarBaldeContado() {
+        this.baldeContado = getBalde();
+    }
+
 }
@@ -1,11 +1,18 @@
 package br.com.alura.forum.modelo;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 
 @Entity
+// cache de segundo nivel: o autor do tópico e de cada resposta sai daqui em vez de um select por usuario
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Usuario {
 
 	@Id
@@ -2,7 +2,40 @@ package br.com.alura.forum.repository;
 
 import br.com.alura.forum.modelo.Curso;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface CursoRepository extends JpaRepository<Curso, Long> {
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+
+public interface CursoRepository extends JpaRepository<Curso, Long>, CursoRepositoryCustom {
+
+    /*
+        Todo cadastro de tópico procura o curso pelo nome, e os cursos quase não mudam. Com o cache de consultas do
+        Hibernate o resultado (o id do curso) fica guardado por nome, e o Curso em si vem do cache de segundo nivel:
+        so a primeira busca de cada nome vai ao banco. O proprio Hibernate invalida o resultado quando a tabela curso
+        e alterada por ele, depois do commit.
+
+        Os metodos de consulta do Spring Data não tem transação própria: o readOnly manda a busca para uma réplica
+        quando elas existem (ver DataSourceComReplicas). Dentro de uma transação de escrita, como no cadastro, a busca
+        entra nela e vai para o primário.
+     */
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
     Curso findByNome(String nome);
+
+    // busca varios cursos de uma vez, usado no cadastro em lote para não consultar o mesmo curso para cada tópico
+    List<Curso> findByNomeIn(Collection<String> nomes);
+
+    /*
+        Versão da listagem de tópicos do curso, lida direto do banco (e não do cache do findByNome) para o ETag.
+     */
+    @Transactional(readOnly = true)
+    @Query("select c.versaoTopicos from Curso c where c.nome = :nome")
+    Long versaoDosTopicos(@Param("nome") String nome);
 }
@@ -0,0 +1,22 @@
+package br.com.alura.forum.repository;
+
+import java.util.Collection;
+
+/*
+    Metodos do CursoRepository que não dão para escrever so com @Query, implementados no CursoRepositoryImpl. O Spring
+    Data junta os dois pelo sufixo Impl.
+ */
+public interface CursoRepositoryCustom {
+
+    // chamado pelo ListagemDoCursoListener, dentro da mesma transação da escrita do tópico
+    int incrementarVersaoDosTopicos(Collection<Long> ids);
+
+    // para escritas de um tópico que não passam pelos listeners, sem precisar ler o curso dele antes
+    int incrementarVersaoDosTopicosDoCursoDoTopico(Long topicoId);
+
+    // o mesmo, so se o tópico ainda estiver na versão informada (remoção condicional)
+    int incrementarVersaoDosTopicosDoCursoDoTopicoNaVersao(Long topicoId, Long versao);
+
+    // para alterações em massa, que não passam pelos listeners
+    int incrementarVersaoDosTopicosDeTodosOsCursos();
+}
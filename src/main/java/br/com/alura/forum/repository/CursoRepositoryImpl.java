@@ -0,0 +1,45 @@
+package br.com.alura.forum.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/*
+    O incremento da versão da listagem e feito por JDBC, e não com um update JPQL, de proposito: um update em massa
+    pelo Hibernate tira todos os cursos do cache de segundo nivel e invalida o cache de consultas do findByNome, e isso
+    aconteceria a cada tópico cadastrado. A coluna não faz parte de nada que fica em cache, então o Hibernate não
+    precisa saber da alteração. O JdbcTemplate usa a mesma conexão, e portanto a mesma transação, do JPA.
+ */
+class CursoRepositoryImpl implements CursoRepositoryCustom {
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public int incrementarVersaoDosTopicos(Collection<Long> ids) {
+        return jdbcTemplate.update("update curso set versao_topicos = versao_topicos + 1 where id in (:ids)",
+                Collections.singletonMap("ids", ids));
+    }
+
+    @Override
+    public int incrementarVersaoDosTopicosDoCursoDoTopico(Long topicoId) {
+        return jdbcTemplate.update("update curso set versao_topicos = versao_topicos + 1 "
+                + "where id = (select curso_id from topico where id = :topico)",
+                Collections.singletonMap("topico", topicoId));
+    }
+
+    @Override
+    public int incrementarVersaoDosTopicosDoCursoDoTopicoNaVersao(Long topicoId, Long versao) {
+        MapSqlParameterSource parametros = new MapSqlParameterSource("topico", topicoId).addValue("versao", versao);
+        return jdbcTemplate.update("update curso set versao_topicos = versao_topicos + 1 "
+                + "where id = (select curso_id from topico where id = :topico and versao = :versao)", parametros);
+    }
+
+    @Override
+    public int incrementarVersaoDosTopicosDeTodosOsCursos() {
+        return jdbcTemplate.update("update curso set versao_topicos = versao_topicos + 1", Collections.emptyMap());
+    }
+}
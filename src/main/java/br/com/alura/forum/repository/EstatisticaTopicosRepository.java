@@ -0,0 +1,36 @@
+package br.com.alura.forum.repository;
+
+import br.com.alura.forum.controller.dto.TopicosPorCursoDTO;
+import br.com.alura.forum.controller.dto.TopicosPorDiaDTO;
+import br.com.alura.forum.controller.dto.TopicosPorStatusDTO;
+import br.com.alura.forum.modelo.BaldeDeTopicos;
+import br.com.alura.forum.modelo.EstatisticaTopicos;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+
+import java.util.List;
+
+/*
+    Leitura das estatisticas dos tópicos. Cada consulta soma as linhas da estatistica_topicos, uma por balde (curso,
+    status e dia), então o custo depende da quantidade de baldes e não da de tópicos. Baldes que voltaram a zero
+    continuam na tabela e são filtrados aqui.
+
+    E um Repository e não um JpaRepository porque a tabela so e alterada pelos metodos do
+    EstatisticaTopicosRepositoryCustom.
+ */
+public interface EstatisticaTopicosRepository extends Repository<EstatisticaTopicos, BaldeDeTopicos>,
+        EstatisticaTopicosRepositoryCustom {
+
+    @Query("select new br.com.alura.forum.controller.dto.TopicosPorCursoDTO(c.nome, sum(e.quantidade)) "
+            + "from EstatisticaTopicos e left join Curso c on c.id = e.balde.cursoId "
+            + "group by e.balde.cursoId, c.nome having sum(e.quantidade) > 0 order by c.nome")
+    List<TopicosPorCursoDTO> porCurso();
+
+    @Query("select new br.com.alura.forum.controller.dto.TopicosPorStatusDTO(e.balde.status, sum(e.quantidade)) "
+            + "from EstatisticaTopicos e group by e.balde.status having sum(e.quantidade) > 0 order by e.balde.status")
+    List<TopicosPorStatusDTO> porStatus();
+
+    @Query("select new br.com.alura.forum.controller.dto.TopicosPorDiaDTO(e.balde.dia, sum(e.quantidade)) "
+            + "from EstatisticaTopicos e group by e.balde.dia having sum(e.quantidade) > 0 order by e.balde.dia")
+    List<TopicosPorDiaDTO> porDia();
+}
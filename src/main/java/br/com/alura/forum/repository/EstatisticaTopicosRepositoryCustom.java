@@ -0,0 +1,20 @@
+package br.com.alura.forum.repository;
+
+import br.com.alura.forum.modelo.BaldeDeTopicos;
+
+import java.util.Map;
+
+/*
+    Escritas da estatistica_topicos, implementadas por JDBC no EstatisticaTopicosRepositoryImpl.
+ */
+public interface EstatisticaTopicosRepositoryCustom {
+
+    // soma cada diferença a quantidade do balde, criando os baldes que ainda não existem
+    void somar(Map<BaldeDeTopicos, Long> diferencas);
+
+    // tira 1 do balde em que o tópico esta agora, lido da linha dele pelo proprio update, se ele estiver na versão
+    int subtrairTopicoNaVersao(Long topicoId, Long versao);
+
+    // apaga tudo e conta de novo a partir da tabela topico; devolve a quantidade de baldes
+    int reconstruir();
+}
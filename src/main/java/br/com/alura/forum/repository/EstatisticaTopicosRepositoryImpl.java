@@ -0,0 +1,80 @@
+package br.com.alura.forum.repository;
+
+import br.com.alura.forum.modelo.BaldeDeTopicos;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.sql.Date;
+import java.util.Collections;
+import java.util.Map;
+
+/*
+    As escritas vão por JDBC, na mesma conexão e transação do JPA (como no CursoRepositoryImpl): a quantidade de um
+    balde e somada no banco (quantidade = quantidade + ?), então duas transações que mexem no mesmo balde não perdem
+    uma a contagem da outra, so esperam o lock da linha.
+
+    O balde que ainda não existe e inserido. Se outra transação inserir o mesmo balde antes, o insert falha na chave
+    primaria e a diferença e somada na linha dela; no H2 so o comando falha, não a transação.
+ */
+class EstatisticaTopicosRepositoryImpl implements EstatisticaTopicosRepositoryCustom {
+
+    private static final String SOMAR = "update estatistica_topicos set quantidade = quantidade + :diferenca "
+            + "where curso_id = :curso and status = :status and dia = :dia";
+
+    private static final String INSERIR = "insert into estatistica_topicos (curso_id, status, dia, quantidade) "
+            + "values (:curso, :status, :dia, :diferenca)";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public void somar(Map<BaldeDeTopicos, Long> diferencas) {
+        SqlParameterSource[] parametros = diferencas.entrySet().stream()
+                .map(diferenca -> parametros(diferenca.getKey(), diferenca.getValue()))
+                .toArray(SqlParameterSource[]::new);
+        int[] somados = jdbcTemplate.batchUpdate(SOMAR, parametros);
+        for (int i = 0; i < somados.length; i++) {
+            if (somados[i] == 0) {
+                inserir(parametros[i]);
+            }
+        }
+    }
+
+    @Override
+    public int subtrairTopicoNaVersao(Long topicoId, Long versao) {
+        return jdbcTemplate.update("update estatistica_topicos e set quantidade = quantidade - 1 "
+                + "where exists (select 1 from topico t where t.id = :topico and t.versao = :versao "
+                + "and coalesce(t.curso_id, " + BaldeDeTopicos.SEM_CURSO + ") = e.curso_id "
+                + "and t.status = e.status and cast(t.data_criacao as date) = e.dia)",
+                new MapSqlParameterSource("topico", topicoId).addValue("versao", versao));
+    }
+
+    @Override
+    public int reconstruir() {
+        jdbcTemplate.update("delete from estatistica_topicos", Collections.emptyMap());
+        return jdbcTemplate.update("insert into estatistica_topicos (curso_id, status, dia, quantidade) "
+                + "select coalesce(curso_id, " + BaldeDeTopicos.SEM_CURSO + "), status, cast(data_criacao as date), "
+                + "count(*) from topico where status is not null and data_criacao is not null "
+                + "group by coalesce(curso_id, " + BaldeDeTopicos.SEM_CURSO + "), status, cast(data_criacao as date)",
+                Collections.emptyMap());
+    }
+
+    private void inserir(SqlParameterSource parametros) {
+        try {
+            jdbcTemplate.update(INSERIR, parametros);
+        } catch (DuplicateKeyException e) {
+            jdbcTemplate.update(SOMAR, parametros);
+        }
+    }
+
+    private static SqlParameterSource parametros(BaldeDeTopicos balde, long diferenca) {
+        return new MapSqlParameterSource()
+                .addValue("curso", balde.getCursoId())
+                .addValue("status", balde.getStatus().name())
+                .addValue("dia", Date.valueOf(balde.getDia()))
+                .addValue("diferenca", diferenca);
+    }
+}
@@ -0,0 +1,105 @@
+package br.com.alura.forum.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Tabela topico_em_alta, o checkpoint do TopicosEmAlta. Não ha entidade: o ranking so grava e lê as pontuações em
+    lote, por JDBC, na transação de quem chamou.
+
+    A pontuação e atualizada e, se o tópico ainda não tem linha, inserida com um insert ... select do proprio tópico:
+    se ele foi apagado nesse meio tempo, nada e inserido.
+ */
+@Repository
+public class TopicoEmAltaRepository {
+
+    private static final String ATUALIZAR = "update topico_em_alta set pontuacao = :pontuacao, "
+            + "calculada_em = :calculadaEm where topico_id = :topico";
+
+    private static final String INSERIR = "insert into topico_em_alta (topico_id, pontuacao, calculada_em) "
+            + "select id, cast(:pontuacao as double), cast(:calculadaEm as timestamp) from topico where id = :topico";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void salvar(Map<Long, Double> pontuacoes, long calculadaEm) {
+        SqlParameterSource[] parametros = pontuacoes.entrySet().stream()
+                .map(pontuacao -> new MapSqlParameterSource()
+                        .addValue("topico", pontuacao.getKey())
+                        .addValue("pontuacao", pontuacao.getValue())
+                        .addValue("calculadaEm", new Timestamp(calculadaEm)))
+                .toArray(SqlParameterSource[]::new);
+        int[] atualizados = jdbcTemplate.batchUpdate(ATUALIZAR, parametros);
+        for (int i = 0; i < atualizados.length; i++) {
+            if (atualizados[i] == 0) {
+                jdbcTemplate.update(INSERIR, parametros[i]);
+            }
+        }
+    }
+
+    public void remover(Collection<Long> topicos) {
+        if (!topicos.isEmpty()) {
+            jdbcTemplate.update("delete from topico_em_alta where topico_id in (:topicos)",
+                    Collections.singletonMap("topicos", topicos));
+        }
+    }
+
+    public List<PontuacaoSalva> carregar() {
+        return jdbcTemplate.query("select e.topico_id, c.nome, e.pontuacao, e.calculada_em from topico_em_alta e "
+                        + "join topico t on t.id = e.topico_id left join curso c on c.id = t.curso_id",
+                (linha, numero) -> new PontuacaoSalva(linha.getLong(1), linha.getString(2), linha.getDouble(3),
+                        linha.getTimestamp(4).getTime()));
+    }
+
+    // nome do curso de cada tópico que existe (null para o tópico sem curso); os apagados ficam de fora do mapa
+    public Map<Long, String> cursosDosTopicos(Collection<Long> topicos) {
+        Map<Long, String> cursos = new HashMap<>();
+        jdbcTemplate.query("select t.id, c.nome from topico t left join curso c on c.id = t.curso_id "
+                        + "where t.id in (:topicos)", Collections.singletonMap("topicos", topicos),
+                linha -> {
+                    cursos.put(linha.getLong(1), linha.getString(2));
+                });
+        return cursos;
+    }
+
+    public static final class PontuacaoSalva {
+
+        private final long topico;
+        private final String curso;
+        private final double pontuacao;
+        private final long calculadaEm;
+
+        PontuacaoSalva(long topico, String curso, double pontuacao, long calculadaEm) {
+            this.topico = topico;
+            this.curso = curso;
+            this.pontuacao = pontuacao;
+            this.calculadaEm = calculadaEm;
+        }
+
+        public long getTopico() {
+            return topico;
+        }
+
+        public String getCurso() {
+            return curso;
+        }
+
+        public double getPontuacao() {
+            return pontuacao;
+        }
+
+        public long getCalculadaEm() {
+            return calculadaEm;
+        }
+    }
+}
@@ -1,11 +1,28 @@
 package br.com.alura.forum.repository;
 
+import br.com.alura.forum.controller.dto.TopicoDTO;
 import br.com.alura.forum.modelo.Topico;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface TopicoRepository extends JpaRepository<Topico, Long> {
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+public interface TopicoRepository extends JpaRepository<Topico, Long>, TopicoRepositoryCustom {
 
     /*
         JpaRepository - e uma interface que temos que passar a entidade(classe) e qual e o tipo do atributo
@@ -34,4 +51,147 @@ public interface TopicoRepository extends JpaRepository<Topico, Long> {
             relacionamento.
             caso esteja sem o _ ele vai entender que o atributo da entidade.
      */
+
+    /*
+        Paginação por chave (keyset) na ordem (dataCriacao desc, id desc).
+
+        O Pageable aqui serve so para limitar a quantidade de linhas (sempre com page 0): como o retorno e List e não
+        Page, o Spring Data não dispara o select count(*), e como a página e sempre a primeira, não existe OFFSET.
+        Quem anda pelas páginas e o filtro do where, a partir do ultimo tópico da página anterior.
+
+        A listagem so precisa de id, titulo, mensagem e dataCriacao, então as consultas ja devolvem o TopicoDTO com
+        "select new": o Hibernate busca so essas colunas, não carrega o autor e o curso (que são eager no Topico) e
+        não guarda nada no contexto de persistência. A transação readOnly evita o flush e o dirty checking.
+     */
+    String SELECT_TOPICO_DTO = "select new br.com.alura.forum.controller.dto.TopicoDTO("
+            + "t.id, t.titulo, t.mensagem, t.dataCriacao, t.quantidadeRespostas, t.ultimaAtividade) from Topico t ";
+
+    @Transactional(readOnly = true)
+    @Query(SELECT_TOPICO_DTO + "order by t.dataCriacao desc, t.id desc")
+    List<TopicoDTO> primeiraPagina(Pageable limite);
+
+    @Transactional(readOnly = true)
+    @Query(SELECT_TOPICO_DTO + "where t.dataCriacao < :dataCriacao "
+            + "or (t.dataCriacao = :dataCriacao and t.id < :id) "
+            + "order by t.dataCriacao desc, t.id desc")
+    List<TopicoDTO> paginaApos(@Param("dataCriacao") LocalDateTime dataCriacao, @Param("id") Long id,
+                               Pageable limite);
+
+    /*
+        A primeira página de um curso e o que os clientes mais pedem (e o que o findByCursoNome atendia antes da
+        paginação), então ela vai para o cache de consultas. Como o resultado e o proprio DTO, um acerto não vai ao
+        banco nenhuma vez; qualquer escrita na tabela topico feita pelo Hibernate invalida o resultado.
+     */
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @Query(SELECT_TOPICO_DTO + "where t.curso.nome = :nomeCurso order by t.dataCriacao desc, t.id desc")
+    List<TopicoDTO> primeiraPaginaPorCursoNome(@Param("nomeCurso") String nomeCurso, Pageable limite);
+
+    @Transactional(readOnly = true)
+    @Query(SELECT_TOPICO_DTO + "where t.curso.nome = :nomeCurso "
+            + "and (t.dataCriacao < :dataCriacao or (t.dataCriacao = :dataCriacao and t.id < :id)) "
+            + "order by t.dataCriacao desc, t.id desc")
+    List<TopicoDTO> paginaAposPorCursoNome(@Param("nomeCurso") String nomeCurso,
+                                           @Param("dataCriacao") LocalDateTime dataCriacao, @Param("id") Long id,
+                                           Pageable limite);
+
+    /*
+        As mesmas consultas, na ordem (ultimaAtividade desc, id desc): os tópicos com resposta mais recente primeiro.
+        Como a ultimaAtividade e uma coluna do proprio Topico, o indice idx_topico_ultima_atividade_id atende a
+        ordenação, sem GROUP BY em Resposta.
+     */
+    @Transactional(readOnly = true)
+    @Query(SELECT_TOPICO_DTO + "order by t.ultimaAtividade desc, t.id desc")
+    List<TopicoDTO> primeiraPaginaPorAtividade(Pageable limite);
+
+    @Transactional(readOnly = true)
+    @Query(SELECT_TOPICO_DTO + "where t.ultimaAtividade < :ultimaAtividade "
+            + "or (t.ultimaAtividade = :ultimaAtividade and t.id < :id) "
+            + "order by t.ultimaAtividade desc, t.id desc")
+    List<TopicoDTO> paginaAposPorAtividade(@Param("ultimaAtividade") LocalDateTime ultimaAtividade,
+                                           @Param("id") Long id, Pageable limite);
+
+    @Transactional(readOnly = true)
+    @Query(SELECT_TOPICO_DTO + "where t.curso.nome = :nomeCurso order by t.ultimaAtividade desc, t.id desc")
+    List<TopicoDTO> primeiraPaginaPorCursoNomeEAtividade(@Param("nomeCurso") String nomeCurso, Pageable limite);
+
+    @Transactional(readOnly = true)
+    @Query(SELECT_TOPICO_DTO + "where t.curso.nome = :nomeCurso "
+            + "and (t.ultimaAtividade < :ultimaAtividade or (t.ultimaAtividade = :ultimaAtividade and t.id < :id)) "
+            + "order by t.ultimaAtividade desc, t.id desc")
+    List<TopicoDTO> paginaAposPorCursoNomeEAtividade(@Param("nomeCurso") String nomeCurso,
+                                                     @Param("ultimaAtividade") LocalDateTime ultimaAtividade,
+                                                     @Param("id") Long id, Pageable limite);
+
+    // linhas buscadas do banco de cada vez pelos streams abaixo (o cursor do driver)
+    int TAMANHO_LOTE_EXPORTACAO = 500;
+
+    /*
+        Carrega o tópico com tudo o que o DetalhesDoTopicoDTO usa: o autor, o curso, as respostas e o autor de cada
+        resposta. Sem o EntityGraph seria um select para o tópico, outro para as respostas e mais um para cada autor
+        diferente das respostas (o famoso N+1). Com ele o Hibernate faz os joins e traz tudo em um unico select.
+
+        O "Detalhado" no nome e ignorado pelo Spring Data, a consulta continua sendo pelo id.
+     */
+    @Transactional(readOnly = true)
+    @EntityGraph(attributePaths = {"autor", "curso", "respostas", "respostas.autor"})
+    Optional<Topico> findDetalhadoById(Long id);
+
+    // so a coluna de versão, para o ETag do detalhe; null quando o tópico não existe
+    @Transactional(readOnly = true)
+    @Query("select t.versao from Topico t where t.id = :id")
+    Long versaoDoTopico(@Param("id") Long id);
+
+    /*
+        O stream percorre todos os tópicos (so as colunas do DTO) para a exportação e para reconstruir o indice de
+        busca na subida da aplicação. Devolvendo um Stream o Spring Data usa um cursor do banco (ScrollableResults) em
+        vez de montar uma List com todas as linhas. O Stream so funciona dentro de uma transação e precisa ser fechado
+        por quem chamou. O findResumosPorIds carrega os tópicos que a busca encontrou.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "" + TAMANHO_LOTE_EXPORTACAO),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query(SELECT_TOPICO_DTO + "order by t.id")
+    Stream<TopicoDTO> streamResumos();
+
+    @Transactional(readOnly = true)
+    @Query(SELECT_TOPICO_DTO + "where t.id in :ids")
+    List<TopicoDTO> findResumosPorIds(@Param("ids") Collection<Long> ids);
+
+    /*
+        Escritas condicionais do EscritaCondicionalService: um comando so, que so encontra a linha se a versão ainda
+        for a informada. O "versioned" sobe a versão no update, como o Hibernate faria no dirty checking.
+     */
+    @Modifying
+    @Query("update versioned Topico t set t.titulo = :titulo, t.mensagem = :mensagem "
+            + "where t.id = :id and t.versao = :versao")
+    int atualizarNaVersao(@Param("id") Long id, @Param("versao") Long versao, @Param("titulo") String titulo,
+                          @Param("mensagem") String mensagem);
+
+    @Modifying
+    @Query("delete from Topico t where t.id = :id and t.versao = :versao")
+    int removerNaVersao(@Param("id") Long id, @Param("versao") Long versao);
+
+    /*
+        Usadas pelo ReparoDeContadoresService. O update recalcula quantidadeRespostas e ultimaAtividade a partir das
+        respostas, so nos tópicos da faixa de ids em que os valores estão errados; o "versioned" sobe a versão deles,
+        para o ETag do detalhe mudar junto.
+     */
+    @Query("select min(t.id) from Topico t")
+    Long menorId();
+
+    @Query("select max(t.id) from Topico t")
+    Long maiorId();
+
+    String QUANTIDADE_RESPOSTAS = "(select count(r) from Resposta r where r.topico.id = t.id)";
+    String ULTIMA_ATIVIDADE = "coalesce((select max(r.dataCriacao) from Resposta r where r.topico.id = t.id), "
+            + "t.dataCriacao)";
+
+    @Modifying
+    @Query("update versioned Topico t set t.quantidadeRespostas = " + QUANTIDADE_RESPOSTAS + ", "
+            + "t.ultimaAtividade = " + ULTIMA_ATIVIDADE + " "
+            + "where t.id between :de and :ate and (t.quantidadeRespostas <> " + QUANTIDADE_RESPOSTAS + " "
+            + "or t.ultimaAtividade <> " + ULTIMA_ATIVIDADE + ")")
+    int recalcularContadores(@Param("de") Long de, @Param("ate") Long ate);
 }
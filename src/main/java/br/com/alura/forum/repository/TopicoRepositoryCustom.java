@@ -0,0 +1,11 @@
+package br.com.alura.forum.repository;
+
+/*
+    Contadores de respostas do Topico, somados no proprio banco pelo TopicoRepositoryImpl. Chamado pelo
+    ContadoresDeRespostas no commit da transação das respostas.
+ */
+public interface TopicoRepositoryCustom {
+
+    // soma a diferença na quantidadeRespostas e leva a ultimaAtividade para a resposta mais recente do tópico
+    int somarRespostas(Long topicoId, int diferenca);
+}
@@ -0,0 +1,38 @@
+package br.com.alura.forum.repository;
+
+import br.com.alura.forum.modelo.Topico;
+import org.hibernate.FlushMode;
+import org.hibernate.query.NativeQuery;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+/*
+    Os contadores são alterados com um update so, que soma no banco (quantidade_respostas + ?) em vez de ler, somar
+    em memória e gravar: duas respostas ao mesmo tempo no mesmo tópico so esperam o lock da linha uma da outra, sem
+    perder uma contagem nem falhar por conflito de versão. A ultimaAtividade sai das respostas ja gravadas, e a versão
+    do tópico sobe no mesmo comando, porque o detalhe (e o ETag dele) muda com a resposta.
+
+    Diferente do CursoRepositoryImpl, aqui o comando vai pelo Hibernate (um native query com a entidade Topico
+    sincronizada): a listagem do curso fica no cache de consultas, e assim o Hibernate invalida os resultados da
+    tabela topico no commit. Ele roda depois do ultimo flush, então o flush automatico da consulta e desligado.
+ */
+class TopicoRepositoryImpl implements TopicoRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int somarRespostas(Long topicoId, int diferenca) {
+        return entityManager.createNativeQuery("update topico set "
+                + "quantidade_respostas = quantidade_respostas + :diferenca, "
+                + "ultima_atividade = coalesce((select max(r.data_criacao) from resposta r where r.topico_id = :topico), "
+                + "data_criacao), versao = versao + 1 where id = :topico")
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(Topico.class)
+                .setHibernateFlushMode(FlushMode.MANUAL)
+                .setParameter("diferenca", diferenca)
+                .setParameter("topico", topicoId)
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,162 @@
+package br.com.alura.forum.service;
+
+import br.com.alura.forum.controller.dto.AlteracaoDeStatusEmLoteDTO;
+import br.com.alura.forum.controller.form.AlteracaoDeStatusEmLoteForm;
+import br.com.alura.forum.modelo.BaldeDeTopicos;
+import br.com.alura.forum.modelo.Curso;
+import br.com.alura.forum.modelo.StatusTopico;
+import br.com.alura.forum.modelo.Topico;
+import br.com.alura.forum.repository.CursoRepository;
+import br.com.alura.forum.service.estatisticas.EstatisticasDeTopicos;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    Muda o status de todos os tópicos que atendem um filtro, sem carregar nenhum deles.
+
+    Em vez de um findById e um dirty checking por tópico, cada lote de ate forum.status-em-lote.tamanho tópicos vira um
+    unico update em massa, na sua propria transação: uma alteração de cem mil tópicos não segura a tabela (nem o log do
+    banco) em uma transação so. O update sobe a versão dos tópicos alterados, então o ETag do detalhe muda junto, e
+    ignora os que ja estão no novo status.
+
+    Os lotes são por keyset: cada um busca os proximos ids que atendem o filtro depois do ultimo id do lote anterior, em
+    ordem de id. Com ids esparsos não sobra transação vazia (faixas fixas de ids abriam uma transação para cada faixa,
+    mesmo sem nenhum tópico nela), e a alteração termina no primeiro lote incompleto.
+
+    O update em massa não passa pelo contexto de persistência. Com o open-in-view a requisição inteira usa o mesmo
+    EntityManager, então as alterações pendentes são enviadas antes (flush) e as entidades carregadas são descartadas
+    depois (clear), para ninguém ler um status antigo da memória.
+
+    Pelo mesmo motivo as estatisticas (EstatisticasDeTopicos) não ficam sabendo da mudança sozinhas. Os tópicos do lote
+    são lidos (so curso, status e data) com lock, e o update fica restrito a esses ids: assim cada tópico sai
+    exatamente do balde em que estava, mesmo com outras escritas acontecendo ao mesmo tempo.
+ */
+@Service
+public class AlteracaoDeStatusEmLoteService {
+
+    @Value("${forum.status-em-lote.tamanho}")
+    private int tamanhoLote;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private CursoRepository cursoRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EstatisticasDeTopicos estatisticasDeTopicos;
+
+    public AlteracaoDeStatusEmLoteDTO alterar(AlteracaoDeStatusEmLoteForm form) {
+        Long cursoId = null;
+        if (form.getNomeCurso() != null) {
+            Curso curso = cursoRepository.findByNome(form.getNomeCurso());
+            if (curso == null) {
+                return new AlteracaoDeStatusEmLoteDTO(0, 0);
+            }
+            cursoId = curso.getId();
+        }
+        Long idDoCurso = cursoId;
+
+        TransactionTemplate transacao = new TransactionTemplate(transactionManager);
+        long alterados = 0;
+        int transacoes = 0;
+        Long ultimo = null;
+        while (true) {
+            Long depoisDe = ultimo;
+            List<Long> lote = transacao.execute(status -> {
+                entityManager.flush();
+                return atualizar(form, idDoCurso, depoisDe);
+            });
+            transacoes++;
+            alterados += lote.size();
+            if (lote.size() < tamanhoLote) {
+                break;
+            }
+            ultimo = lote.get(lote.size() - 1);
+        }
+        entityManager.clear();
+        return new AlteracaoDeStatusEmLoteDTO(alterados, transacoes);
+    }
+
+    // ids alterados, em ordem; a lista vazia ou menor que o lote indica que não ha mais o que alterar
+    private List<Long> atualizar(AlteracaoDeStatusEmLoteForm form, Long cursoId, Long depoisDe) {
+        List<Tuple> alterados = travarProximos(form, cursoId, depoisDe);
+        List<Long> ids = new ArrayList<>(alterados.size());
+        if (alterados.isEmpty()) {
+            return ids;
+        }
+        for (Tuple alterado : alterados) {
+            ids.add(alterado.get(0, Long.class));
+            BaldeDeTopicos balde = new BaldeDeTopicos(alterado.get(1, Long.class), alterado.get(2, StatusTopico.class),
+                    alterado.get(3, LocalDateTime.class));
+            estatisticasDeTopicos.registrar(balde, -1);
+            estatisticasDeTopicos.registrar(balde.comStatus(form.getNovoStatus()), 1);
+        }
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Topico> update = cb.createCriteriaUpdate(Topico.class);
+        Root<Topico> topico = update.from(Topico.class);
+        update.set(topico.get("status"), form.getNovoStatus())
+                .set(topico.<Long>get("versao"), cb.sum(topico.<Long>get("versao"), 1L))
+                .where(topico.get("id").in(ids));
+        entityManager.createQuery(update).executeUpdate();
+        return ids;
+    }
+
+    /*
+        id, curso, status e data dos proximos tópicos do filtro depois do id depoisDe (do inicio, quando null), em ordem
+        de id e no maximo um lote, travados até o fim da transação
+     */
+    private List<Tuple> travarProximos(AlteracaoDeStatusEmLoteForm form, Long cursoId, Long depoisDe) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> consulta = cb.createTupleQuery();
+        Root<Topico> topico = consulta.from(Topico.class);
+        List<Predicate> filtro = filtro(cb, topico, form, cursoId);
+        if (depoisDe != null) {
+            filtro.add(cb.greaterThan(topico.get("id"), depoisDe));
+        }
+
+        consulta.multiselect(topico.get("id"), topico.get("curso").get("id"), topico.get("status"),
+                topico.get("dataCriacao"))
+                .where(filtro.toArray(new Predicate[0]))
+                .orderBy(cb.asc(topico.get("id")));
+        return entityManager.createQuery(consulta)
+                .setMaxResults(tamanhoLote)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+    }
+
+    private List<Predicate> filtro(CriteriaBuilder cb, Root<Topico> topico, AlteracaoDeStatusEmLoteForm form,
+                                   Long cursoId) {
+        List<Predicate> filtro = new ArrayList<>();
+        filtro.add(cb.notEqual(topico.get("status"), form.getNovoStatus()));
+        if (cursoId != null) {
+            filtro.add(cb.equal(topico.get("curso").get("id"), cursoId));
+        }
+        if (form.getStatusAtual() != null) {
+            filtro.add(cb.equal(topico.get("status"), form.getStatusAtual()));
+        }
+        if (form.getCriadosAntesDe() != null) {
+            filtro.add(cb.lessThan(topico.get("dataCriacao"), form.getCriadosAntesDe()));
+        }
+        return filtro;
+    }
+}
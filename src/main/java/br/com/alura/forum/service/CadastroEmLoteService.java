@@ -0,0 +1,82 @@
+package br.com.alura.forum.service;
+
+import br.com.alura.forum.controller.dto.TopicoDTO;
+import br.com.alura.forum.controller.form.TopicoForm;
+import br.com.alura.forum.modelo.Curso;
+import br.com.alura.forum.modelo.Topico;
+import br.com.alura.forum.repository.CursoRepository;
+import br.com.alura.forum.service.aovivo.TopicoCadastradoEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/*
+    Cadastro de muitos tópicos de uma vez.
+
+    Cada curso diferente e buscado uma unica vez (um select com "in"), e os tópicos são persistidos em blocos do mesmo
+    tamanho do batch do JDBC: a cada bloco o flush manda os INSERTs juntos e o clear esvazia o contexto de persistência,
+    para a memória não crescer com o tamanho do lote.
+
+    Cada tópico cadastrado tambem vai para os assinantes do GET /topicos/stream do curso, como no cadastro unitario.
+ */
+@Service
+public class CadastroEmLoteService {
+
+    @Autowired
+    private CursoRepository cursoRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size}")
+    private int tamanhoDoBatch;
+
+    @Transactional
+    public List<TopicoDTO> cadastrar(List<TopicoForm> forms) {
+        Set<String> nomesDosCursos = forms.stream().map(TopicoForm::getNomeCurso).collect(Collectors.toSet());
+        Map<String, Curso> cursosPorNome = new HashMap<>();
+        cursoRepository.findByNomeIn(nomesDosCursos).forEach(curso -> cursosPorNome.put(curso.getNome(), curso));
+
+        List<TopicoDTO> cadastrados = new ArrayList<>(forms.size());
+        List<Topico> bloco = new ArrayList<>(tamanhoDoBatch);
+        for (TopicoForm form : forms) {
+            Topico topico = form.converter(cursosPorNome);
+            entityManager.persist(topico);
+            bloco.add(topico);
+
+            if (bloco.size() == tamanhoDoBatch) {
+                enviar(bloco, cadastrados);
+            }
+        }
+        enviar(bloco, cadastrados);
+        return cadastrados;
+    }
+
+    private void enviar(List<Topico> bloco, List<TopicoDTO> cadastrados) {
+        entityManager.flush();
+        for (Topico topico : bloco) {
+            TopicoDTO topicoDto = new TopicoDTO(topico);
+            cadastrados.add(topicoDto);
+            // entregue depois do commit da transação do lote inteiro
+            if (topico.getCurso() != null) {
+                eventPublisher.publishEvent(new TopicoCadastradoEvent(topico.getCurso().getNome(), topicoDto));
+            }
+        }
+        bloco.clear();
+        // os cursos do mapa tambem ficam detached, mas o Topico so precisa do id deles para a chave estrangeira
+        entityManager.clear();
+    }
+}
@@ -0,0 +1,69 @@
+package br.com.alura.forum.service;
+
+import br.com.alura.forum.repository.CursoRepository;
+import br.com.alura.forum.repository.TopicoRepository;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+    Mantem a quantidadeRespostas e a ultimaAtividade dos tópicos para toda resposta gravada ou removida, tenha ela
+    passado pelo Topico.adicionarResposta ou não (o ContadoresDeRespostasListener avisa aqui).
+
+    Como no EstatisticasDeTopicos, as diferenças da transação são acumuladas por tópico e gravadas no commit, depois
+    do ultimo flush (quando o tópico e as respostas ja estão no banco): um update atomico por tópico, que tambem sobe a
+    versão dele. A linha do tópico fica travada so durante o commit. Como esse update não passa pelo
+    ListagemDoCursoListener, a versão da listagem do curso sobe aqui.
+ */
+@Component
+public class ContadoresDeRespostas {
+
+    @Autowired
+    private TopicoRepository topicoRepository;
+
+    @Autowired
+    private CursoRepository cursoRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    public void registrar(Long topicoId, int diferenca) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            gravar(topicoId, diferenca);
+            return;
+        }
+        diferencasDaTransacao().merge(topicoId, diferenca, Integer::sum);
+    }
+
+    private void gravar(Long topicoId, int diferenca) {
+        topicoRepository.somarRespostas(topicoId, diferenca);
+        cursoRepository.incrementarVersaoDosTopicosDoCursoDoTopico(topicoId);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, Integer> diferencasDaTransacao() {
+        Map<Long, Integer> diferencas =
+                (Map<Long, Integer>) TransactionSynchronizationManager.getResource(ContadoresDeRespostas.class);
+        if (diferencas == null) {
+            Map<Long, Integer> novas = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(ContadoresDeRespostas.class, novas);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ContadoresDeRespostas.class);
+                }
+            });
+            // uma resposta cadastrada e removida na mesma transação ainda muda a versão: o update roda com diferença 0
+            entityManager.unwrap(SessionImplementor.class).getActionQueue()
+                    .registerProcess(sessao -> novas.forEach(this::gravar));
+            diferencas = novas;
+        }
+        return diferencas;
+    }
+}
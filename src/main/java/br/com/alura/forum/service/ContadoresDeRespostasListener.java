@@ -0,0 +1,36 @@
+package br.com.alura.forum.service;
+
+import br.com.alura.forum.modelo.Resposta;
+import br.com.alura.forum.modelo.Topico;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+
+/*
+    Listener JPA da Resposta que passa cada resposta gravada (+1) ou removida (-1) para o ContadoresDeRespostas.
+ */
+public class ContadoresDeRespostasListener {
+
+    // mesmo ciclo do ListagemDoCursoListener: o serviço depende do EntityManagerFactory que cria este listener
+    @Autowired
+    private ObjectProvider<ContadoresDeRespostas> contadores;
+
+    @PostPersist
+    public void respostaCadastrada(Resposta resposta) {
+        registrar(resposta, 1);
+    }
+
+    @PostRemove
+    public void respostaRemovida(Resposta resposta) {
+        registrar(resposta, -1);
+    }
+
+    private void registrar(Resposta resposta, int diferenca) {
+        Topico topico = resposta.getTopico();
+        if (topico != null && topico.getId() != null) {
+            contadores.getObject().registrar(topico.getId(), diferenca);
+        }
+    }
+}
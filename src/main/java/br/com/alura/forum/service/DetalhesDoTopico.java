@@ -0,0 +1,34 @@
+package br.com.alura.forum.service;
+
+import br.com.alura.forum.controller.dto.DetalhesDoTopicoDTO;
+
+/*
+    O que uma carga do DetalhesDoTopicoService entrega: o DTO, o mesmo DTO ja serializado em JSON e a versão do
+    tópico que foi de fato lida, que e a que vai no ETag da resposta.
+ */
+public class DetalhesDoTopico {
+
+    private final Long versao;
+    private final DetalhesDoTopicoDTO dto;
+    private final byte[] json;
+
+    DetalhesDoTopico(Long versao, DetalhesDoTopicoDTO dto, byte[] json) {
+        this.versao = versao;
+        this.dto = dto;
+        this.json = json;
+    }
+
+    public Long getVersao() {
+        return versao;
+    }
+
+    // para os formatos binarios (CBOR, Smile), que o conversor de cada um ainda escreve a cada requisição
+    public DetalhesDoTopicoDTO getDto() {
+        return dto;
+    }
+
+    // compartilhado por todas as requisições da carga: quem recebe não pode alterar
+    public byte[] getJson() {
+        return json;
+    }
+}
@@ -0,0 +1,187 @@
+package br.com.alura.forum.service;
+
+import br.com.alura.forum.controller.dto.DetalhesDoTopicoDTO;
+import br.com.alura.forum.modelo.Topico;
+import br.com.alura.forum.repository.TopicoRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.UncheckedIOException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/*
+    Carrega o DetalhesDoTopicoDTO do GET /topicos/{id} uma vez so para todas as requisições simultaneas do mesmo
+    tópico (single-flight). Quando um tópico viraliza, centenas de requisições chegariam juntas ao findDetalhadoById;
+    aqui a primeira faz a consulta e as outras esperam pelo mesmo resultado, e todas devolvem o mesmo DTO. A carga
+    também guarda o DTO ja serializado em JSON, então as requisições em JSON dividem um unico corpo, escrito uma vez.
+
+    A chave e o id com a versão do tópico, que o controller ja leu para o ETag. Por isso quem chega depois de uma
+    alteração nunca pega a carga da versão anterior. Entre essa leitura e o findDetalhadoById o tópico pode mudar (ou
+    a consulta pode ir para uma réplica atrasada): a carga entrega a versão que de fato leu, o ETag da resposta sai
+    dela, e no micro-cache a carga fica na chave dessa versão.
+
+    Com forum.detalhe.micro-cache (milissegundos) maior que zero, a carga concluida continua servindo as requisições da
+    mesma versão durante esse tempo. Como a versão faz parte da chave, o micro-cache não devolve dado antigo; ele so
+    poupa o banco nos picos.
+
+    O contador forum.detalhe.cargas mostra quantas requisições fizeram a consulta (resultado=carregada), quantas
+    esperaram a de outra (colapsada) e quantas usaram uma carga ja concluida (micro-cache).
+ */
+@Service
+public class DetalhesDoTopicoService {
+
+    private final ConcurrentMap<Chave, Carga> cargas = new ConcurrentHashMap<>();
+
+    @Autowired
+    private TopicoRepository topicoRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper; // o mesmo do Spring MVC, para o JSON sair igual ao do conversor
+
+    @Value("${forum.detalhe.micro-cache}")
+    private long microCache;
+
+    private final Counter carregadas;
+    private final Counter colapsadas;
+    private final Counter doMicroCache;
+
+    public DetalhesDoTopicoService(MeterRegistry registry) {
+        this.carregadas = contador(registry, "carregada");
+        this.colapsadas = contador(registry, "colapsada");
+        this.doMicroCache = contador(registry, "micro-cache");
+    }
+
+    public Optional<DetalhesDoTopico> carregar(Long id, Long versao) {
+        Chave chave = new Chave(id, versao);
+        while (true) {
+            Carga existente = cargas.get(chave);
+            if (existente != null) {
+                if (!existente.expirou()) {
+                    (existente.resultado.isDone() ? doMicroCache : colapsadas).increment();
+                    return esperar(existente);
+                }
+                cargas.remove(chave, existente);
+            }
+
+            Carga nova = new Carga();
+            if (cargas.putIfAbsent(chave, nova) != null) {
+                continue; // outra requisição começou a carga entre o get e o putIfAbsent
+            }
+            carregadas.increment();
+            try {
+                // findDetalhadoById ja traz respostas e autores juntos, para o DTO não disparar uma consulta por autor
+                Optional<DetalhesDoTopico> detalhes = topicoRepository.findDetalhadoById(id)
+                        .map(this::detalhes);
+                nova.concluir(detalhes, microCache);
+                if (microCache > 0 && detalhes.isPresent() && !versao.equals(detalhes.get().getVersao())) {
+                    // quem esta esperando ja tem a carga; as proximas requisições da versão lida e que vão usar
+                    cargas.remove(chave, nova);
+                    cargas.putIfAbsent(new Chave(id, detalhes.get().getVersao()), nova);
+                }
+                return detalhes;
+            } catch (Throwable e) {
+                // qualquer falha, inclusive um Error (um OutOfMemoryError montando o DTO), tem que concluir a carga:
+                // senão quem esta no join() dela fica esperando para sempre
+                nova.resultado.completeExceptionally(e);
+                cargas.remove(chave, nova);
+                throw e;
+            } finally {
+                if (microCache <= 0) {
+                    cargas.remove(chave, nova);
+                }
+            }
+        }
+    }
+
+    // as cargas concluidas so saem do mapa quando alguém pede o mesmo tópico de novo, o resto sai aqui
+    @Scheduled(fixedDelay = 10000)
+    public void removerExpiradas() {
+        cargas.values().removeIf(Carga::expirou);
+    }
+
+    private DetalhesDoTopico detalhes(Topico topico) {
+        DetalhesDoTopicoDTO dto = new DetalhesDoTopicoDTO(topico);
+        try {
+            return new DetalhesDoTopico(topico.getVersao(), dto, objectMapper.writeValueAsBytes(dto));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Optional<DetalhesDoTopico> esperar(Carga carga) {
+        try {
+            return carga.resultado.join();
+        } catch (CompletionException e) {
+            // a falha da carga e repassada como ela aconteceu para quem estava esperando
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static Counter contador(MeterRegistry registry, String resultado) {
+        return Counter.builder("forum.detalhe.cargas")
+                .description("Requisições do detalhe do tópico por forma de carga")
+                .tag("resultado", resultado)
+                .register(registry);
+    }
+
+    private static class Carga {
+
+        private final CompletableFuture<Optional<DetalhesDoTopico>> resultado = new CompletableFuture<>();
+        // System.nanoTime a partir do qual a carga concluida não serve mais; so vale depois de concluida
+        private volatile long validaAte;
+
+        void concluir(Optional<DetalhesDoTopico> detalhes, long microCache) {
+            validaAte = System.nanoTime() + microCache * 1_000_000;
+            resultado.complete(detalhes);
+        }
+
+        boolean expirou() {
+            return resultado.isDone() && validaAte - System.nanoTime() <= 0;
+        }
+    }
+
+    private static class Chave {
+
+        private final Long id;
+        private final Long versao;
+
+        Chave(Long id, Long versao) {
+            this.id = id;
+            this.versao = versao;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Chave)) {
+                return false;
+            }
+            Chave chave = (Chave) o;
+            return id.equals(chave.id) && versao.equals(chave.versao);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, versao);
+        }
+    }
+}
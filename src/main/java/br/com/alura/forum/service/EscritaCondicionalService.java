@@ -0,0 +1,88 @@
+package br.com.alura.forum.service;
+
+import br.com.alura.forum.controller.form.AtualizacaoTopicoForm;
+import br.com.alura.forum.repository.CursoRepository;
+import br.com.alura.forum.repository.TopicoRepository;
+import br.com.alura.forum.service.busca.IndiceDeTopicos;
+import br.com.alura.forum.service.emalta.TopicosEmAlta;
+import br.com.alura.forum.service.estatisticas.EstatisticasDeTopicos;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/*
+    Alteração e remoção de um tópico com comandos condicionais, sem ler o tópico antes.
+
+    O update ou o delete so afeta a linha se o id existir e a versão for a que o cliente tem (o ETag que ele mandou no
+    If-Match). Os metodos devolvem a quantidade de linhas afetadas: 1 deu certo, 0 quer dizer que o tópico não existe
+    ou mudou desde que o cliente o leu, e o controller descobre qual dos dois so nesse caso.
+
+    Como são updates/deletes em massa, os listeners do Topico não são chamados: a versão da listagem do curso, o
+    indice de busca, as estatisticas e o ranking dos tópicos em alta são atualizados aqui. A alteração so muda título
+    e mensagem, que não entram nas estatisticas nem no ranking.
+ */
+@Service
+public class EscritaCondicionalService {
+
+    @Autowired
+    private TopicoRepository topicoRepository;
+
+    @Autowired
+    private CursoRepository cursoRepository;
+
+    @Autowired
+    private IndiceDeTopicos indiceDeTopicos;
+
+    @Autowired
+    private EstatisticasDeTopicos estatisticasDeTopicos;
+
+    @Autowired
+    private TopicosEmAlta topicosEmAlta;
+
+    @Transactional
+    public int atualizar(Long id, Long versao, AtualizacaoTopicoForm form) {
+        int alterados = topicoRepository.atualizarNaVersao(id, versao, form.getTitulo(), form.getMensagem());
+        if (alterados > 0) {
+            cursoRepository.incrementarVersaoDosTopicosDoCursoDoTopico(id);
+            String titulo = form.getTitulo();
+            String mensagem = form.getMensagem();
+            depoisDoCommit(() -> indiceDeTopicos.indexar(id, titulo, mensagem));
+        }
+        return alterados;
+    }
+
+    /*
+        Três comandos, todos com a mesma condição de versão: o incremento da versão da listagem do curso e a subtração
+        no balde das estatisticas leem o curso e o balde da propria linha do tópico, sem um select separado, e precisam
+        rodar antes do delete, enquanto a linha existe. O delete e o que decide: se ele não encontra a linha na versão
+        (o tópico mudou ou foi removido entre os comandos, ou ja não estava na versão), a transação e desfeita e os
+        dois primeiros não valem.
+     */
+    @Transactional
+    public int remover(Long id, Long versao) {
+        cursoRepository.incrementarVersaoDosTopicosDoCursoDoTopicoNaVersao(id, versao);
+        estatisticasDeTopicos.registrarRemocao(id, versao);
+        int removidos = topicoRepository.removerNaVersao(id, versao);
+        if (removidos == 0) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            return 0;
+        }
+        depoisDoCommit(() -> {
+            indiceDeTopicos.remover(id);
+            topicosEmAlta.remover(id);
+        });
+        return removidos;
+    }
+
+    private void depoisDoCommit(Runnable acao) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                acao.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,64 @@
+package br.com.alura.forum.service;
+
+import br.com.alura.forum.controller.dto.TopicoDTO;
+import br.com.alura.forum.repository.TopicoRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/*
+    Exportação de todos os tópicos em NDJSON (um TopicoDTO em JSON por linha).
+
+    A ideia e que a memória usada não dependa da quantidade de tópicos: as linhas vem do banco por um cursor, ja como
+    TopicoDTO (so as colunas do DTO, sem entidade no contexto de persistência), e cada uma e escrita direto na
+    resposta pelo TopicoDTOSerializer.
+ */
+@Service
+public class ExportacaoTopicosService {
+
+    @Autowired
+    private TopicoRepository topicoRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper; // o mesmo do Spring MVC, para as datas sairem no mesmo formato da API
+
+    /*
+        readOnly: o Hibernate não guarda a cópia de cada entidade para o dirty checking e não faz flush no final.
+     */
+    @Transactional(readOnly = true)
+    public long exportar(OutputStream saida) throws IOException {
+        // sem o flush a cada objeto, quem decide quando mandar os bytes e o buffer do gerador
+        ObjectWriter writer = objectMapper.writerFor(TopicoDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        long total = 0;
+
+        try (Stream<TopicoDTO> topicos = topicoRepository.streamResumos();
+             JsonGenerator gerador = objectMapper.getFactory().createGenerator(saida)) {
+            // por padrão o Jackson separa valores na raiz com espaço, aqui cada linha já termina com \n
+            gerador.setRootValueSeparator(null);
+            // quem abriu a saida e quem fecha, aqui so fazemos o flush final
+            gerador.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+            Iterator<TopicoDTO> iterator = topicos.iterator();
+            while (iterator.hasNext()) {
+                writer.writeValue(gerador, iterator.next());
+                gerador.writeRaw('\n');
+                total++;
+
+                if (total % TopicoRepository.TAMANHO_LOTE_EXPORTACAO == 0) {
+                    gerador.flush();
+                }
+            }
+        }
+        return total;
+    }
+}
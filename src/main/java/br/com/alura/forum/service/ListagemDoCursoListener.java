@@ -0,0 +1,64 @@
+package br.com.alura.forum.service;
+
+import br.com.alura.forum.modelo.Curso;
+import br.com.alura.forum.modelo.Topico;
+import br.com.alura.forum.repository.CursoRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/*
+    Listener JPA do Topico que sobe a versão da listagem do curso (o ETag do GET /topicos?nomeCurso=...) sempre que um
+    tópico do curso e criado, alterado ou removido. Os contadores de respostas não passam por aqui: quem sobe a versão
+    quando eles mudam e o ContadoresDeRespostas.
+
+    O incremento roda na hora, na mesma transação da escrita, e uma vez so por curso em cada transação: um cadastro em
+    lote com mil tópicos do mesmo curso faz um update so.
+ */
+public class ListagemDoCursoListener {
+
+    // o CursoRepository depende do EntityManagerFactory que cria este listener (mesmo ciclo do IndiceDeTopicosListener)
+    @Autowired
+    private ObjectProvider<CursoRepository> cursoRepository;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void topicoAlterado(Topico topico) {
+        Curso curso = topico.getCurso();
+        if (curso == null || curso.getId() == null) {
+            return;
+        }
+        if (cursosAlteradosNaTransacao().add(curso.getId())) {
+            cursoRepository.getObject().incrementarVersaoDosTopicos(Collections.singleton(curso.getId()));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<Long> cursosAlteradosNaTransacao() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return new HashSet<>();
+        }
+        Set<Long> cursos = (Set<Long>) TransactionSynchronizationManager.getResource(ListagemDoCursoListener.class);
+        if (cursos == null) {
+            Set<Long> novos = new HashSet<>();
+            TransactionSynchronizationManager.bindResource(ListagemDoCursoListener.class, novos);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ListagemDoCursoListener.class);
+                }
+            });
+            cursos = novos;
+        }
+        return cursos;
+    }
+}
@@ -0,0 +1,59 @@
+package br.com.alura.forum.service;
+
+import br.com.alura.forum.repository.CursoRepository;
+import br.com.alura.forum.repository.TopicoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/*
+    Recalcula a quantidadeRespostas e a ultimaAtividade dos tópicos a partir das respostas, para corrigir o que tiver
+    sido gravado sem passar pelo ContadoresDeRespostas (uma carga direta no banco, por exemplo).
+
+    Roda no horario do forum.reparo-contadores.cron. Cada faixa de TAMANHO_FAIXA ids e um update em massa na sua
+    propria transação, para não segurar a tabela inteira de uma vez, e so os tópicos com valores errados são alterados.
+ */
+@Service
+public class ReparoDeContadoresService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReparoDeContadoresService.class);
+
+    private static final int TAMANHO_FAIXA = 1000;
+
+    @Autowired
+    private TopicoRepository topicoRepository;
+
+    @Autowired
+    private CursoRepository cursoRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Scheduled(cron = "${forum.reparo-contadores.cron}")
+    public int reparar() {
+        Long menor = topicoRepository.menorId();
+        Long maior = topicoRepository.maiorId();
+        if (menor == null) {
+            return 0;
+        }
+
+        TransactionTemplate transacao = new TransactionTemplate(transactionManager);
+        int corrigidos = 0;
+        for (long inicio = menor; inicio <= maior; inicio += TAMANHO_FAIXA) {
+            long de = inicio;
+            long ate = inicio + TAMANHO_FAIXA - 1;
+            corrigidos += transacao.execute(status -> topicoRepository.recalcularContadores(de, ate));
+        }
+
+        // o update em massa não passa pelo ListagemDoCursoListener, então o ETag das listagens e invalidado aqui
+        if (corrigidos > 0) {
+            transacao.execute(status -> cursoRepository.incrementarVersaoDosTopicosDeTodosOsCursos());
+        }
+        LOGGER.info("Reparo dos contadores de respostas: {} topicos corrigidos", corrigidos);
+        return corrigidos;
+    }
+}
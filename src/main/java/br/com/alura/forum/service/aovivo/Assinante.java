@@ -0,0 +1,91 @@
+package br.com.alura.forum.service.aovivo;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/*
+    Uma conexão do GET /topicos/stream.
+
+    Quem publica so coloca o evento na fila do assinante, que tem tamanho fixo, e nunca escreve na conexão. A escrita
+    e feita por uma das threads do TopicosAoVivo, no maximo uma por assinante de cada vez (agendado). Se a fila enche,
+    o cliente não esta dando conta: a conexão e encerrada, e o EventSource do navegador reconecta sozinho.
+
+    Quando e a escrita que falha, a conexão já caiu: o assinante so sai do mapa, sem o complete(), que tentaria
+    terminar uma resposta que ninguém mais esta lendo.
+ */
+class Assinante {
+
+    private final String nomeCurso;
+    private final SseEmitter emitter;
+    private final BlockingQueue<SseEmitter.SseEventBuilder> fila;
+    private final AtomicBoolean agendado = new AtomicBoolean();
+    private final AtomicBoolean encerrado = new AtomicBoolean();
+    private final Consumer<Assinante> aoFalhar;
+
+    Assinante(String nomeCurso, SseEmitter emitter, int capacidade, Consumer<Assinante> aoFalhar) {
+        this.nomeCurso = nomeCurso;
+        this.emitter = emitter;
+        this.fila = new ArrayBlockingQueue<>(capacidade);
+        this.aoFalhar = aoFalhar;
+    }
+
+    // devolve false quando a fila esta cheia; quem chamou decide o que fazer com o assinante
+    boolean enfileirar(SseEmitter.SseEventBuilder evento, Executor executor) {
+        if (encerrado.get()) {
+            return true;
+        }
+        if (!fila.offer(evento)) {
+            return false;
+        }
+        if (agendado.compareAndSet(false, true)) {
+            executor.execute(this::enviar);
+        }
+        return true;
+    }
+
+    private void enviar() {
+        do {
+            try {
+                SseEmitter.SseEventBuilder evento;
+                while (!encerrado.get() && (evento = fila.poll()) != null) {
+                    emitter.send(evento);
+                }
+            } catch (IOException | IllegalStateException e) {
+                // cliente desconectado ou emitter ja completado
+                falhar();
+            } finally {
+                agendado.set(false);
+            }
+            // um evento pode ter chegado entre o ultimo poll e o agendado.set(false)
+        } while (!encerrado.get() && !fila.isEmpty() && agendado.compareAndSet(false, true));
+    }
+
+    // fila cheia, timeout ou desligamento: a conexão ainda esta de pe e a resposta e terminada normalmente
+    void encerrar() {
+        if (encerrado.compareAndSet(false, true)) {
+            fila.clear();
+            emitter.complete();
+        }
+    }
+
+    void falhar() {
+        if (encerrado.compareAndSet(false, true)) {
+            fila.clear();
+        }
+        aoFalhar.accept(this);
+    }
+
+    String getNomeCurso() {
+        return nomeCurso;
+    }
+
+    SseEmitter getEmitter() {
+        return emitter;
+    }
+}
@@ -0,0 +1,26 @@
+package br.com.alura.forum.service.aovivo;
+
+import br.com.alura.forum.controller.dto.TopicoDTO;
+
+/*
+    Publicado pelo TopicosController.cadastrar e, para cada tópico do lote, pelo CadastroEmLoteService; o
+    TopicosAoVivo recebe depois do commit.
+ */
+public class TopicoCadastradoEvent {
+
+    private final String nomeCurso;
+    private final TopicoDTO topico;
+
+    public TopicoCadastradoEvent(String nomeCurso, TopicoDTO topico) {
+        this.nomeCurso = nomeCurso;
+        this.topico = topico;
+    }
+
+    public String getNomeCurso() {
+        return nomeCurso;
+    }
+
+    public TopicoDTO getTopico() {
+        return topico;
+    }
+}
@@ -0,0 +1,150 @@
+package br.com.alura.forum.service.aovivo;
+
+import br.com.alura.forum.controller.dto.TopicoDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+    Distribui os tópicos cadastrados para quem esta conectado no GET /topicos/stream do curso (server-sent events).
+
+    As conexões ficam abertas em modo assíncrono no servlet, sem ocupar uma thread do Tomcat cada. Quem escreve nelas e
+    um pool pequeno e fixo (forum.stream.threads), e cada assinante tem uma fila limitada (forum.stream.capacidade):
+    um cliente lento enche a propria fila e e desconectado, sem atrasar os outros nem quem cadastrou o tópico.
+
+    O tópico so e publicado depois do commit do cadastro (TransactionalEventListener), para nenhum painel mostrar um
+    tópico que acabou não sendo gravado.
+ */
+@Component
+public class TopicosAoVivo {
+
+    private static final String EVENTO_TOPICO = "topico";
+
+    private final Map<String, Set<Assinante>> assinantesPorCurso = new ConcurrentHashMap<>();
+    private final AtomicInteger quantidadeAssinantes = new AtomicInteger();
+
+    @Value("${forum.stream.threads}")
+    private int threads;
+
+    @Value("${forum.stream.capacidade}")
+    private int capacidade;
+
+    @Value("${forum.stream.timeout}")
+    private long timeout;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private ObjectMapper objectMapper; // o mesmo do Spring MVC, para o tópico sair igual ao da API
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void iniciar() {
+        AtomicInteger numero = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, tarefa -> {
+            Thread thread = new Thread(tarefa, "topicos-ao-vivo-" + numero.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        registry.gauge("forum.stream.assinantes", quantidadeAssinantes);
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        assinantesPorCurso.values().forEach(assinantes -> assinantes.forEach(Assinante::encerrar));
+        executor.shutdown();
+    }
+
+    public SseEmitter assinar(String nomeCurso) {
+        SseEmitter emitter = new SseEmitter(timeout);
+        Assinante assinante = new Assinante(nomeCurso, emitter, capacidade, this::remover);
+        /*
+            O add fica dentro do compute: com um computeIfAbsent(...).add, o remover do ultimo assinante do curso podia
+            tirar o conjunto do mapa entre os dois, e o novo assinante ficava num conjunto que ninguém mais le.
+         */
+        assinantesPorCurso.compute(nomeCurso, (curso, assinantes) -> {
+            Set<Assinante> atuais = assinantes == null ? ConcurrentHashMap.newKeySet() : assinantes;
+            atuais.add(assinante);
+            return atuais;
+        });
+        quantidadeAssinantes.incrementAndGet();
+
+        emitter.onCompletion(() -> remover(assinante));
+        emitter.onTimeout(assinante::encerrar);
+        emitter.onError(erro -> assinante.falhar());
+        return emitter;
+    }
+
+    @TransactionalEventListener
+    public void topicoCadastrado(TopicoCadastradoEvent evento) {
+        Set<Assinante> assinantes = assinantesPorCurso.get(evento.getNomeCurso());
+        if (assinantes == null || assinantes.isEmpty()) {
+            return;
+        }
+        TopicoDTO topico = evento.getTopico();
+        /*
+            O JSON e gerado uma vez so, antes do laço: com o .data(topico) o conversor do Jackson serializava o mesmo
+            tópico de novo para cada assinante. O builder continua um por assinante, porque o build() dele não pode ser
+            chamado duas vezes.
+         */
+        String json = serializar(topico);
+        for (Assinante assinante : assinantes) {
+            SseEmitter.SseEventBuilder sse = SseEmitter.event()
+                    .name(EVENTO_TOPICO)
+                    .id(String.valueOf(topico.getId()))
+                    .data(json, MediaType.APPLICATION_JSON);
+            if (!assinante.enfileirar(sse, executor)) {
+                assinante.encerrar();
+            }
+        }
+    }
+
+    /*
+        Comentario SSE periodico: mantem a conexão viva em proxies que fecham conexões paradas e e assim que uma
+        conexão que caiu sem aviso e descoberta (a escrita falha e o assinante sai).
+     */
+    @Scheduled(fixedRateString = "${forum.stream.heartbeat}")
+    public void heartbeat() {
+        assinantesPorCurso.values().forEach(assinantes -> assinantes.forEach(assinante -> {
+            if (!assinante.enfileirar(SseEmitter.event().comment("heartbeat"), executor)) {
+                assinante.encerrar();
+            }
+        }));
+    }
+
+    private String serializar(TopicoDTO topico) {
+        try {
+            return objectMapper.writeValueAsString(topico);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void remover(Assinante assinante) {
+        assinantesPorCurso.computeIfPresent(assinante.getNomeCurso(), (curso, atuais) -> {
+            if (atuais.remove(assinante)) {
+                quantidadeAssinantes.decrementAndGet();
+            }
+            return atuais.isEmpty() ? null : atuais;
+        });
+    }
+}
@@ -0,0 +1,283 @@
+package br.com.alura.forum.service.busca;
+
+import br.com.alura.forum.controller.dto.TopicoDTO;
+import br.com.alura.forum.repository.TopicoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/*
+    Indice invertido em memória sobre o titulo e a mensagem dos tópicos, usado pelo GET /topicos/busca.
+
+    Para cada termo guardamos em quais documentos ele aparece e quantas vezes (as Ocorrencias). Uma busca so visita as
+    listas dos termos pesquisados, em vez de varrer a tabela inteira como um LIKE '%x%' faria. O ranking usa o BM25,
+    e o titulo conta PESO_TITULO vezes, porque um termo no titulo diz mais sobre o tópico que um termo na mensagem.
+
+    Cada versão indexada de um tópico e um "documento" numerado em sequência. Alterar um tópico marca o documento
+    antigo como removido e cria outro; as listas so perdem os removidos na compactação, que roda quando eles passam de
+    LIMITE_REMOVIDOS do total. Até lá a quantidade de documentos de cada termo (usada no idf) e aproximada.
+
+    O indice e atualizado pelo IndiceDeTopicosListener depois do commit de cada cadastro, alteração ou remoção, e e
+    reconstruido a partir do banco quando a aplicação sobe. Leituras podem acontecer em paralelo, escritas são
+    exclusivas (ReadWriteLock).
+ */
+@Component
+public class IndiceDeTopicos {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndiceDeTopicos.class);
+
+    private static final int PESO_TITULO = 2;
+    // parâmetros padrão do BM25: k1 controla a saturação da frequência, b o peso do tamanho do documento
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double LIMITE_REMOVIDOS = 0.3;
+
+    private final Map<String, Ocorrencias> ocorrenciasPorTermo = new HashMap<>();
+    private final Map<Long, Integer> documentoPorTopico = new HashMap<>();
+    private long[] topicoPorDocumento = new long[1024];
+    private int[] tamanhoPorDocumento = new int[1024];
+    private final BitSet removidos = new BitSet();
+    private int totalDeDocumentos;
+    private long somaDosTamanhos;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // acumuladores da busca, reaproveitados por thread para não alocar um array do tamanho do indice a cada consulta
+    private final ThreadLocal<float[]> pontuacoes = ThreadLocal.withInitial(() -> new float[0]);
+
+    @Autowired
+    private TopicoRepository topicoRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconstruir() {
+        TransactionTemplate transacao = new TransactionTemplate(transactionManager);
+        transacao.setReadOnly(true);
+        long inicio = System.currentTimeMillis();
+        Integer total = transacao.execute(status -> {
+            lock.writeLock().lock();
+            try (Stream<TopicoDTO> topicos = topicoRepository.streamResumos()) {
+                limpar();
+                topicos.forEach(topico -> adicionar(topico.getId(), topico.getTitulo(), topico.getMensagem()));
+                return documentoPorTopico.size();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+        LOGGER.info("Indice de busca reconstruido com {} topicos em {} ms", total, System.currentTimeMillis() - inicio);
+    }
+
+    public void indexar(Long id, String titulo, String mensagem) {
+        lock.writeLock().lock();
+        try {
+            retirar(id);
+            adicionar(id, titulo, mensagem);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remover(Long id) {
+        lock.writeLock().lock();
+        try {
+            retirar(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*
+        Devolve os ids da página pedida, do mais relevante para o menos relevante. Para não ordenar todos os tópicos
+        encontrados, um heap guarda so os (pagina + 1) * tamanho melhores, e nunca mais que os encontrados: a página
+        vem do cliente, e uma página muito alta não pode virar um heap enorme nem passar do limite do int.
+     */
+    public List<Long> buscar(String consulta, int pagina, int tamanho) {
+        Set<String> termos = new LinkedHashSet<>(Tokenizador.termos(consulta));
+        if (termos.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        lock.readLock().lock();
+        try {
+            int ativos = documentoPorTopico.size();
+            if (ativos == 0) {
+                return Collections.emptyList();
+            }
+            double tamanhoMedio = (double) somaDosTamanhos / ativos;
+
+            float[] acumulado = pontuacoes.get();
+            if (acumulado.length < totalDeDocumentos) {
+                acumulado = new float[topicoPorDocumento.length];
+                pontuacoes.set(acumulado);
+            }
+            // documentos que receberam pontos, para o heap e para zerar o acumulador no final
+            int[] tocados = new int[16];
+            int quantidadeTocados = 0;
+
+            for (String termo : termos) {
+                Ocorrencias ocorrencias = ocorrenciasPorTermo.get(termo);
+                if (ocorrencias == null) {
+                    continue;
+                }
+                int df = Math.min(ocorrencias.tamanho(), ativos);
+                double idf = Math.log(1 + (ativos - df + 0.5) / (df + 0.5));
+                for (int i = 0; i < ocorrencias.tamanho(); i++) {
+                    int documento = ocorrencias.documento(i);
+                    if (removidos.get(documento)) {
+                        continue;
+                    }
+                    int tf = ocorrencias.frequencia(i);
+                    double normalizacao = 1 - B + B * tamanhoPorDocumento[documento] / tamanhoMedio;
+                    if (acumulado[documento] == 0) {
+                        if (quantidadeTocados == tocados.length) {
+                            tocados = Arrays.copyOf(tocados, quantidadeTocados * 2);
+                        }
+                        tocados[quantidadeTocados++] = documento;
+                    }
+                    acumulado[documento] += (float) (idf * tf * (K1 + 1) / (tf + K1 * normalizacao));
+                }
+            }
+
+            // uma página depois do ultimo documento encontrado e vazia, sem montar o heap
+            List<Long> ids = (long) pagina * tamanho < quantidadeTocados
+                    ? pagina(acumulado, tocados, quantidadeTocados, pagina, tamanho)
+                    : Collections.<Long>emptyList();
+            for (int i = 0; i < quantidadeTocados; i++) {
+                acumulado[tocados[i]] = 0;
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Long> pagina(float[] pontos, int[] tocados, int quantidadeTocados, int pagina, int tamanho) {
+        int limite = (int) Math.min(((long) pagina + 1) * tamanho, quantidadeTocados);
+        // heap de minimo: o pior dos melhores fica no topo e sai quando chega alguem melhor
+        PriorityQueue<Integer> melhores = new PriorityQueue<>(limite + 1, (a, b) -> comparar(pontos, a, b));
+        for (int i = 0; i < quantidadeTocados; i++) {
+            int documento = tocados[i];
+            if (melhores.size() < limite || comparar(pontos, documento, melhores.peek()) > 0) {
+                melhores.offer(documento);
+                if (melhores.size() > limite) {
+                    melhores.poll();
+                }
+            }
+        }
+
+        List<Long> ids = new ArrayList<>(melhores.size());
+        while (!melhores.isEmpty()) {
+            ids.add(topicoPorDocumento[melhores.poll()]);
+        }
+        Collections.reverse(ids);
+        return ids.subList(pagina * tamanho, ids.size());
+    }
+
+    // menor pontuação primeiro; no empate o documento mais antigo e considerado menos relevante
+    private static int comparar(float[] pontos, int a, int b) {
+        int porPontuacao = Float.compare(pontos[a], pontos[b]);
+        return porPontuacao != 0 ? porPontuacao : Integer.compare(a, b);
+    }
+
+    private void adicionar(Long id, String titulo, String mensagem) {
+        Map<String, Integer> frequencias = new HashMap<>();
+        int tamanho = 0;
+        for (String termo : Tokenizador.termos(titulo)) {
+            frequencias.merge(termo, PESO_TITULO, Integer::sum);
+            tamanho += PESO_TITULO;
+        }
+        for (String termo : Tokenizador.termos(mensagem)) {
+            frequencias.merge(termo, 1, Integer::sum);
+            tamanho++;
+        }
+
+        if (totalDeDocumentos == topicoPorDocumento.length) {
+            topicoPorDocumento = Arrays.copyOf(topicoPorDocumento, totalDeDocumentos * 2);
+            tamanhoPorDocumento = Arrays.copyOf(tamanhoPorDocumento, totalDeDocumentos * 2);
+        }
+        int documento = totalDeDocumentos++;
+        topicoPorDocumento[documento] = id;
+        tamanhoPorDocumento[documento] = tamanho;
+        documentoPorTopico.put(id, documento);
+        somaDosTamanhos += tamanho;
+
+        frequencias.forEach((termo, frequencia) ->
+                ocorrenciasPorTermo.computeIfAbsent(termo, t -> new Ocorrencias()).adicionar(documento, frequencia));
+    }
+
+    private void retirar(Long id) {
+        Integer documento = documentoPorTopico.remove(id);
+        if (documento == null) {
+            return;
+        }
+        removidos.set(documento);
+        somaDosTamanhos -= tamanhoPorDocumento[documento];
+
+        if (removidos.cardinality() > totalDeDocumentos * LIMITE_REMOVIDOS) {
+            compactar();
+        }
+    }
+
+    /*
+        Renumera os documentos ativos em sequência e recria as listas sem os removidos.
+     */
+    private void compactar() {
+        int[] novoNumero = new int[totalDeDocumentos];
+        int ativos = 0;
+        for (int documento = 0; documento < totalDeDocumentos; documento++) {
+            if (removidos.get(documento)) {
+                novoNumero[documento] = -1;
+            } else {
+                novoNumero[documento] = ativos;
+                topicoPorDocumento[ativos] = topicoPorDocumento[documento];
+                tamanhoPorDocumento[ativos] = tamanhoPorDocumento[documento];
+                documentoPorTopico.put(topicoPorDocumento[ativos], ativos);
+                ativos++;
+            }
+        }
+
+        ocorrenciasPorTermo.replaceAll((termo, antigas) -> {
+            Ocorrencias novas = new Ocorrencias();
+            for (int i = 0; i < antigas.tamanho(); i++) {
+                int documento = novoNumero[antigas.documento(i)];
+                if (documento >= 0) {
+                    novas.adicionar(documento, antigas.frequencia(i));
+                }
+            }
+            return novas;
+        });
+        ocorrenciasPorTermo.values().removeIf(ocorrencias -> ocorrencias.tamanho() == 0);
+
+        totalDeDocumentos = ativos;
+        removidos.clear();
+    }
+
+    private void limpar() {
+        ocorrenciasPorTermo.clear();
+        documentoPorTopico.clear();
+        removidos.clear();
+        totalDeDocumentos = 0;
+        somaDosTamanhos = 0;
+    }
+}
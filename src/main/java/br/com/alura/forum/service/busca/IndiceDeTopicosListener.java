@@ -0,0 +1,55 @@
+package br.com.alura.forum.service.busca;
+
+import br.com.alura.forum.modelo.Topico;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/*
+    Listener JPA do Topico que mantem o IndiceDeTopicos em dia com o banco.
+
+    Os valores são copiados no momento do evento, mas o indice so e alterado depois do commit: se a transação for
+    desfeita, a busca não pode encontrar um tópico que não existe.
+ */
+public class IndiceDeTopicosListener {
+
+    /*
+        O IndiceDeTopicos depende do TopicoRepository, que depende do EntityManagerFactory que cria este listener.
+        Com o ObjectProvider o indice so e procurado no primeiro evento, quebrando esse ciclo na subida.
+     */
+    @Autowired
+    private ObjectProvider<IndiceDeTopicos> indice;
+
+    @PostPersist
+    @PostUpdate
+    public void topicoSalvo(Topico topico) {
+        Long id = topico.getId();
+        String titulo = topico.getTitulo();
+        String mensagem = topico.getMensagem();
+        depoisDoCommit(() -> indice.getObject().indexar(id, titulo, mensagem));
+    }
+
+    @PostRemove
+    public void topicoRemovido(Topico topico) {
+        Long id = topico.getId();
+        depoisDoCommit(() -> indice.getObject().remover(id));
+    }
+
+    private void depoisDoCommit(Runnable acao) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    acao.run();
+                }
+            });
+        } else {
+            acao.run();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package br.com.alura.forum.service.busca;
+
+import java.util.Arrays;
+
+/*
+    Posting list de um termo: em quais documentos do indice ele aparece e quantas vezes. Fica em dois arrays de int
+    que crescem conforme a necessidade, em vez de um Map<Long, Integer>, porque com milhões de tópicos os objetos de
+    cada entrada do Map ocupariam mais memória que os próprios dados.
+ */
+class Ocorrencias {
+
+    private int[] documentos = new int[4];
+    private int[] frequencias = new int[4];
+    private int tamanho;
+
+    void adicionar(int documento, int frequencia) {
+        if (tamanho == documentos.length) {
+            documentos = Arrays.copyOf(documentos, tamanho * 2);
+            frequencias = Arrays.copyOf(frequencias, tamanho * 2);
+        }
+        documentos[tamanho] = documento;
+        frequencias[tamanho] = frequencia;
+        tamanho++;
+    }
+
+    int tamanho() {
+        return tamanho;
+    }
+
+    int documento(int posicao) {
+        return documentos[posicao];
+    }
+
+    int frequencia(int posicao) {
+        return frequencias[posicao];
+    }
+}
@@ -0,0 +1,55 @@
+package br.com.alura.forum.service.busca;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/*
+    Quebra um texto nos termos do indice: tudo minusculo, sem acento, separado por qualquer coisa que não seja letra
+    ou numero. Palavras muito comuns (stopwords) e termos de uma letra ficam de fora, porque aparecem em quase todo
+    tópico e so deixariam o indice maior sem ajudar no ranking.
+ */
+class Tokenizador {
+
+    private static final Set<String> STOPWORDS = new HashSet<>(Arrays.asList(
+            "a", "o", "as", "os", "de", "da", "do", "das", "dos", "e", "em", "no", "na", "nos", "nas", "um", "uma",
+            "para", "por", "com", "que", "se", "nao", "mais", "mas", "como", "ao", "ou", "eu", "me", "meu", "minha"));
+
+    private Tokenizador() {
+    }
+
+    static List<String> termos(String texto) {
+        List<String> termos = new ArrayList<>();
+        if (texto == null) {
+            return termos;
+        }
+        String normalizado = Normalizer.normalize(texto, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase();
+
+        StringBuilder termo = new StringBuilder();
+        for (int i = 0; i < normalizado.length(); i++) {
+            char c = normalizado.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                termo.append(c);
+            } else {
+                adicionar(termo, termos);
+            }
+        }
+        adicionar(termo, termos);
+        return termos;
+    }
+
+    private static void adicionar(StringBuilder termo, List<String> termos) {
+        if (termo.length() > 1) {
+            String valor = termo.toString();
+            if (!STOPWORDS.contains(valor)) {
+                termos.add(valor);
+            }
+        }
+        termo.setLength(0);
+    }
+}
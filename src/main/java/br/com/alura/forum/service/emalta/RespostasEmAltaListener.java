@@ -0,0 +1,28 @@
+package br.com.alura.forum.service.emalta;
+
+import br.com.alura.forum.modelo.Resposta;
+import br.com.alura.forum.modelo.Topico;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.persistence.PostPersist;
+
+/*
+    Listener JPA da Resposta: cada resposta nova soma pontos ao tópico no TopicosEmAlta, depois do commit.
+ */
+public class RespostasEmAltaListener {
+
+    @Autowired
+    private ObjectProvider<TopicosEmAlta> emAlta;
+
+    @PostPersist
+    public void respostaCadastrada(Resposta resposta) {
+        Topico topico = resposta.getTopico();
+        if (topico == null) {
+            return;
+        }
+        Long id = topico.getId();
+        String curso = topico.getCurso() != null ? topico.getCurso().getNome() : null;
+        TopicosEmAltaListener.depoisDoCommit(() -> emAlta.getObject().respondido(id, curso));
+    }
+}
@@ -0,0 +1,369 @@
+package br.com.alura.forum.service.emalta;
+
+import br.com.alura.forum.repository.TopicoEmAltaRepository;
+import br.com.alura.forum.repository.TopicoEmAltaRepository.PontuacaoSalva;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/*
+    Ranking dos tópicos em alta do GET /topicos/em-alta. Cada mensagem (o cadastro do tópico ou uma resposta) vale
+    PESO_MENSAGEM pontos e cada visualização do detalhe vale PESO_VISUALIZACAO, e os pontos caem pela metade a cada
+    forum.em-alta.meia-vida milissegundos.
+
+    Para não recalcular as pontuações com o passar do tempo, cada evento e somado ja trazido para um instante fixo (a
+    epoch): um evento no instante t vale peso * e^(lambda * t). Como todos os tópicos caem na mesma proporção, a ordem
+    entre eles so muda quando chega um evento novo, e a pontuação de agora e essa soma * e^(-lambda * agora). Guardamos
+    o logaritmo da soma, porque o e^(lambda * t) passaria do limite do double.
+
+    As pontuações ficam ordenadas da maior para a menor em ConcurrentSkipListSets, um geral e um por curso, então o
+    top-K e a leitura dos K primeiros de um deles, sem ordenar nada na requisição. Cada tópico tem uma entrada so,
+    trocada dentro do compute do mapa por tópico: duas atualizações do mesmo tópico não se perdem, e tópicos
+    diferentes não esperam um pelo outro. Enquanto a entrada e trocada o mesmo tópico pode aparecer duas vezes na
+    leitura, por isso a leitura ignora os repetidos.
+
+    O cadastro, as respostas e a remoção chegam pelos listeners JPA do Topico e da Resposta, depois do commit; as
+    visualizações, pelo detalhar do TopicosController. Uma visualização de um tópico que o ranking ainda não conhece
+    entra so no ranking geral: o curso dele e descoberto na manutenção, com uma consulta para todos esses tópicos, para
+    o detalhar não fazer uma consulta a mais.
+
+    A manutenção, a cada forum.em-alta.checkpoint milissegundos, tambem tira do ranking os tópicos que cairam abaixo
+    de PONTUACAO_MINIMA e grava na tabela topico_em_alta as pontuações que mudaram desde a anterior. Na subida o
+    ranking e lido de la, então um restart perde no maximo os eventos do ultimo intervalo.
+
+    A leitura da subida so acontece no ApplicationReadyEvent, e a aplicação ja pode ter recebido requisições antes
+    dele: as pontuações lidas são somadas as que ja estão na memoria, e não as substituem. No desligamento o ultimo
+    checkpoint e gravado no stop do SmartLifecycle, na fase mais alta, antes de o contexto começar a destruir os
+    beans (o pool de conexões entre eles); um @PreDestroy podia rodar com o DataSource ja fechado.
+ */
+@Component
+public class TopicosEmAlta implements SmartLifecycle {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TopicosEmAlta.class);
+
+    static final double PESO_MENSAGEM = 5;
+    static final double PESO_VISUALIZACAO = 1;
+    // abaixo disso (uma visualização de umas 4 meias-vidas atras) o tópico sai do ranking e da tabela
+    private static final double PONTUACAO_MINIMA = 0.05;
+    private static final int LOTE_CONSULTA = 1000;
+
+    private final ConcurrentMap<Long, Pontuacao> porTopico = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Pontuacao> geral = new ConcurrentSkipListSet<>();
+    private final ConcurrentMap<String, ConcurrentSkipListSet<Pontuacao>> porCurso = new ConcurrentHashMap<>();
+    // tópicos que entraram por uma visualização, sem curso conhecido
+    private final Set<Long> semCurso = ConcurrentHashMap.newKeySet();
+    // tópicos cuja pontuação mudou, ou que sairam do ranking, desde o ultimo checkpoint
+    private final Set<Long> alterados = ConcurrentHashMap.newKeySet();
+
+    // taxa de queda por milissegundo
+    private final double lambda;
+
+    private volatile boolean rodando;
+    private boolean carregado;
+
+    @Autowired
+    private TopicoEmAltaRepository topicoEmAltaRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    public TopicosEmAlta(@Value("${forum.em-alta.meia-vida}") long meiaVida) {
+        this.lambda = Math.log(2) / meiaVida;
+    }
+
+    public void cadastrado(Long id, String curso) {
+        somar(id, curso, true, PESO_MENSAGEM);
+    }
+
+    public void respondido(Long id, String curso) {
+        somar(id, curso, true, PESO_MENSAGEM);
+    }
+
+    public void visualizado(Long id) {
+        somar(id, null, false, PESO_VISUALIZACAO);
+    }
+
+    public void remover(Long id) {
+        porTopico.computeIfPresent(id, (chave, atual) -> {
+            trocar(atual, null);
+            return null;
+        });
+        semCurso.remove(id);
+        alterados.add(id);
+    }
+
+    // ids dos tópicos com maior pontuação agora, do curso ou de todos
+    public List<Long> maisPontuados(String curso, int quantidade) {
+        Set<Pontuacao> ranking = curso == null ? geral : porCurso.get(curso);
+        if (ranking == null) {
+            return Collections.emptyList();
+        }
+        Set<Long> ids = new LinkedHashSet<>();
+        for (Pontuacao pontuacao : ranking) {
+            ids.add(pontuacao.topico);
+            if (ids.size() == quantidade) {
+                break;
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    /*
+        So a primeira chamada le a tabela: as pontuações de la são de antes desta execução, e somadas de novo
+        contariam duas vezes os eventos que ja passaram por um checkpoint dela.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void carregar() {
+        if (carregado) {
+            return;
+        }
+        List<PontuacaoSalva> salvas = transacao(true).execute(status -> topicoEmAltaRepository.carregar());
+        for (PontuacaoSalva salva : salvas) {
+            Long id = salva.getTopico();
+            if (salva.getPontuacao() <= 0 || (alterados.contains(id) && !porTopico.containsKey(id))) {
+                continue; // removido antes da leitura
+            }
+            double log = Math.log(salva.getPontuacao()) + lambda * salva.getCalculadaEm();
+            porTopico.compute(id, (chave, atual) -> {
+                Pontuacao nova = atual == null
+                        ? new Pontuacao(id, salva.getCurso(), true, log)
+                        : atual.somar(log, salva.getCurso(), true);
+                trocar(atual, nova);
+                semCurso.remove(id);
+                return nova;
+            });
+        }
+        carregado = true;
+        LOGGER.info("Ranking dos topicos em alta carregado com {} topicos", porTopico.size());
+    }
+
+    @Scheduled(fixedDelayString = "${forum.em-alta.checkpoint}", initialDelayString = "${forum.em-alta.checkpoint}")
+    public synchronized void manter() {
+        descobrirCursos();
+        podar();
+        salvar();
+    }
+
+    public synchronized void salvar() {
+        List<Long> ids = new ArrayList<>();
+        for (Iterator<Long> pendentes = alterados.iterator(); pendentes.hasNext(); ) {
+            ids.add(pendentes.next());
+            pendentes.remove();
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        long agora = System.currentTimeMillis();
+        Map<Long, Double> pontuacoes = new HashMap<>();
+        List<Long> removidos = new ArrayList<>();
+        for (Long id : ids) {
+            Pontuacao pontuacao = porTopico.get(id);
+            if (pontuacao == null) {
+                removidos.add(id);
+            } else {
+                pontuacoes.put(id, pontuacao.agora(lambda, agora));
+            }
+        }
+        try {
+            transacao(false).execute(status -> {
+                topicoEmAltaRepository.remover(removidos);
+                topicoEmAltaRepository.salvar(pontuacoes, agora);
+                return null;
+            });
+        } catch (DataAccessException | TransactionException e) {
+            // fica para o proximo checkpoint
+            alterados.addAll(ids);
+            LOGGER.warn("Checkpoint do ranking dos topicos em alta falhou", e);
+        }
+    }
+
+    @Override
+    public void start() {
+        rodando = true;
+    }
+
+    @Override
+    public void stop() {
+        salvar();
+        rodando = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return rodando;
+    }
+
+    // para antes de qualquer outro Lifecycle do contexto
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE;
+    }
+
+    private void somar(long id, String curso, boolean cursoConhecido, double peso) {
+        double evento = Math.log(peso) + lambda * System.currentTimeMillis();
+        porTopico.compute(id, (chave, atual) -> {
+            Pontuacao nova = atual == null
+                    ? new Pontuacao(id, curso, cursoConhecido, evento)
+                    : atual.somar(evento, curso, cursoConhecido);
+            trocar(atual, nova);
+            if (!nova.cursoConhecido) {
+                semCurso.add(id);
+            }
+            return nova;
+        });
+        alterados.add(id);
+    }
+
+    private void descobrirCursos() {
+        List<Long> ids = new ArrayList<>(semCurso);
+        for (int inicio = 0; inicio < ids.size(); inicio += LOTE_CONSULTA) {
+            List<Long> lote = ids.subList(inicio, Math.min(inicio + LOTE_CONSULTA, ids.size()));
+            Map<Long, String> cursos = transacao(true).execute(status -> topicoEmAltaRepository.cursosDosTopicos(lote));
+            for (Long id : lote) {
+                if (!cursos.containsKey(id)) {
+                    remover(id); // o tópico foi apagado depois da visualização
+                    continue;
+                }
+                porTopico.computeIfPresent(id, (chave, atual) -> {
+                    if (atual.cursoConhecido) {
+                        return atual;
+                    }
+                    Pontuacao nova = new Pontuacao(id, cursos.get(id), true, atual.log);
+                    trocar(atual, nova);
+                    return nova;
+                });
+                semCurso.remove(id);
+            }
+        }
+    }
+
+    // os menores ficam no fim do ranking geral, então so percorremos os que vão sair
+    private void podar() {
+        double corte = Math.log(PONTUACAO_MINIMA) + lambda * System.currentTimeMillis();
+        for (Iterator<Pontuacao> menores = geral.descendingIterator(); menores.hasNext(); ) {
+            Pontuacao menor = menores.next();
+            if (menor.log >= corte) {
+                break;
+            }
+            porTopico.computeIfPresent(menor.topico, (chave, atual) -> {
+                if (atual.compareTo(menor) != 0) {
+                    return atual; // recebeu um evento depois que a leitura começou
+                }
+                trocar(atual, null);
+                semCurso.remove(chave);
+                alterados.add(chave);
+                return null;
+            });
+        }
+    }
+
+    /*
+        A nova entra antes de a antiga sair, para o tópico não sumir de uma leitura que esteja passando. Quando so o
+        curso muda a posição e a mesma, e no ranking geral a antiga fica onde esta.
+     */
+    private void trocar(Pontuacao antiga, Pontuacao nova) {
+        trocar(geral, antiga, nova != null ? geral : null, nova);
+        trocarNoCurso(antiga, nova);
+    }
+
+    private static void trocar(Set<Pontuacao> daAntiga, Pontuacao antiga, Set<Pontuacao> daNova, Pontuacao nova) {
+        if (daNova != null) {
+            daNova.add(nova);
+        }
+        if (daAntiga != null && antiga != null && !(daAntiga == daNova && antiga.compareTo(nova) == 0)) {
+            daAntiga.remove(antiga);
+        }
+    }
+
+    /*
+        Como no TopicosAoVivo, o ranking do curso sai do mapa quando fica vazio, senão cada curso que ja teve um tópico
+        em alta ficava no mapa para sempre. Por isso o add e o remove ficam dentro do compute do curso: com um
+        computeIfAbsent(...).add, o remove do ultimo tópico do curso podia tirar o ranking do mapa entre os dois, e a
+        nova pontuação ficava num ranking que ninguém mais le.
+     */
+    private void trocarNoCurso(Pontuacao antiga, Pontuacao nova) {
+        String doNovo = nova != null ? nova.curso : null;
+        String doAntigo = antiga != null ? antiga.curso : null;
+        if (doNovo != null) {
+            porCurso.compute(doNovo, (curso, ranking) -> {
+                ConcurrentSkipListSet<Pontuacao> atual = ranking == null ? new ConcurrentSkipListSet<>() : ranking;
+                atual.add(nova);
+                return atual;
+            });
+        }
+        if (doAntigo != null && !(doAntigo.equals(doNovo) && antiga.compareTo(nova) == 0)) {
+            porCurso.computeIfPresent(doAntigo, (curso, ranking) -> {
+                ranking.remove(antiga);
+                return ranking.isEmpty() ? null : ranking;
+            });
+        }
+    }
+
+    private TransactionTemplate transacao(boolean somenteLeitura) {
+        TransactionTemplate transacao = new TransactionTemplate(transactionManager);
+        transacao.setReadOnly(somenteLeitura);
+        return transacao;
+    }
+
+    /*
+        Pontuação de um tópico, imutavel: cada evento cria outra. A ordem natural e da maior para a menor, e no empate
+        o tópico mais novo (maior id) vem primeiro.
+     */
+    private static final class Pontuacao implements Comparable<Pontuacao> {
+
+        private final long topico;
+        private final String curso;
+        private final boolean cursoConhecido;
+        // ln da soma dos pesos * e^(lambda * t) dos eventos
+        private final double log;
+
+        Pontuacao(long topico, String curso, boolean cursoConhecido, double log) {
+            this.topico = topico;
+            this.curso = curso;
+            this.cursoConhecido = cursoConhecido;
+            this.log = log;
+        }
+
+        Pontuacao somar(double evento, String curso, boolean cursoConhecido) {
+            // ln(e^a + e^b) sem calcular e^a nem e^b
+            double maior = Math.max(log, evento);
+            double soma = maior + Math.log1p(Math.exp(Math.min(log, evento) - maior));
+            return this.cursoConhecido || !cursoConhecido
+                    ? new Pontuacao(topico, this.curso, this.cursoConhecido, soma)
+                    : new Pontuacao(topico, curso, true, soma);
+        }
+
+        double agora(double lambda, long agora) {
+            return Math.exp(log - lambda * agora);
+        }
+
+        @Override
+        public int compareTo(Pontuacao outra) {
+            int porPontuacao = Double.compare(outra.log, log);
+            return porPontuacao != 0 ? porPontuacao : Long.compare(outra.topico, topico);
+        }
+    }
+}
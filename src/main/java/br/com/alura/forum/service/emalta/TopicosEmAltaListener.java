@@ -0,0 +1,47 @@
+package br.com.alura.forum.service.emalta;
+
+import br.com.alura.forum.modelo.Topico;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+
+/*
+    Listener JPA do Topico que leva ao TopicosEmAlta o cadastro, que conta como a primeira mensagem do tópico, e a
+    remoção. Como no IndiceDeTopicosListener, o ranking so muda depois do commit, e o TopicosEmAlta vem de um
+    ObjectProvider para não criar um ciclo com o EntityManagerFactory na subida.
+ */
+public class TopicosEmAltaListener {
+
+    @Autowired
+    private ObjectProvider<TopicosEmAlta> emAlta;
+
+    @PostPersist
+    public void topicoCadastrado(Topico topico) {
+        Long id = topico.getId();
+        String curso = topico.getCurso() != null ? topico.getCurso().getNome() : null;
+        depoisDoCommit(() -> emAlta.getObject().cadastrado(id, curso));
+    }
+
+    @PostRemove
+    public void topicoRemovido(Topico topico) {
+        Long id = topico.getId();
+        depoisDoCommit(() -> emAlta.getObject().remover(id));
+    }
+
+    static void depoisDoCommit(Runnable acao) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    acao.run();
+                }
+            });
+        } else {
+            acao.run();
+        }
+    }
+}
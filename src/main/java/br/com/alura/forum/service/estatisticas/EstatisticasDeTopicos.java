@@ -0,0 +1,105 @@
+package br.com.alura.forum.service.estatisticas;
+
+import br.com.alura.forum.controller.dto.EstatisticasDTO;
+import br.com.alura.forum.modelo.BaldeDeTopicos;
+import br.com.alura.forum.repository.EstatisticaTopicosRepository;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+    Estatisticas dos tópicos por curso, status e dia, do GET /estatisticas. Em vez de contar os tópicos a cada
+    consulta, cada escrita soma +1 ou -1 no balde (curso, status, dia) do tópico na tabela estatistica_topicos, e a
+    consulta so soma os baldes.
+
+    As diferenças de uma transação são acumuladas aqui e gravadas uma vez por balde no commit, depois do ultimo flush
+    do Hibernate (um BeforeTransactionCompletionProcess da sessão) e antes do commit no banco. Um cadastro em lote de
+    mil tópicos do mesmo curso vira um update so, e a linha do balde fica travada so durante o commit, não a transação
+    inteira. Se a transação for desfeita, nada e gravado.
+
+    Quem altera tópicos sem passar pelo Hibernate (updates e deletes em massa) informa as diferenças pelo registrar
+    ou pelo registrarRemocao. O reconstruir recalcula tudo a partir da tabela topico, para corrigir o que tiver sido
+    gravado direto no banco.
+ */
+@Service
+public class EstatisticasDeTopicos {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EstatisticasDeTopicos.class);
+
+    @Autowired
+    private EstatisticaTopicosRepository estatisticaTopicosRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Transactional(readOnly = true)
+    public EstatisticasDTO consultar() {
+        return new EstatisticasDTO(estatisticaTopicosRepository.porCurso(), estatisticaTopicosRepository.porStatus(),
+                estatisticaTopicosRepository.porDia());
+    }
+
+    @Transactional
+    public EstatisticasDTO reconstruir() {
+        long inicio = System.currentTimeMillis();
+        int baldes = estatisticaTopicosRepository.reconstruir();
+        LOGGER.info("Estatisticas dos topicos reconstruidas em {} ms: {} baldes", System.currentTimeMillis() - inicio,
+                baldes);
+        return consultar();
+    }
+
+    // balde null e tópico que não conta (sem status ou data)
+    public void registrar(BaldeDeTopicos balde, long diferenca) {
+        if (balde == null || diferenca == 0) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            estatisticaTopicosRepository.somar(Collections.singletonMap(balde, diferenca));
+            return;
+        }
+        diferencasDaTransacao().merge(balde, diferenca, Long::sum);
+    }
+
+    /*
+        Para o delete condicional de um tópico: o balde sai da propria linha do tópico no update das estatisticas, sem
+        ler o tópico antes, e so se ele ainda estiver na versão do delete. Vai direto para o banco, e não para as
+        diferenças do commit, porque depois do delete a linha não existe mais.
+     */
+    public void registrarRemocao(Long topicoId, Long versao) {
+        estatisticaTopicosRepository.subtrairTopicoNaVersao(topicoId, versao);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<BaldeDeTopicos, Long> diferencasDaTransacao() {
+        Map<BaldeDeTopicos, Long> diferencas =
+                (Map<BaldeDeTopicos, Long>) TransactionSynchronizationManager.getResource(EstatisticasDeTopicos.class);
+        if (diferencas == null) {
+            Map<BaldeDeTopicos, Long> novas = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(EstatisticasDeTopicos.class, novas);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(EstatisticasDeTopicos.class);
+                }
+            });
+            // roda no commit depois do flush do Hibernate, que ainda pode trazer eventos (os INSERTs do Topico saem nele)
+            entityManager.unwrap(SessionImplementor.class).getActionQueue().registerProcess(sessao -> {
+                novas.values().removeIf(diferenca -> diferenca == 0);
+                if (!novas.isEmpty()) {
+                    estatisticaTopicosRepository.somar(novas);
+                }
+            });
+            diferencas = novas;
+        }
+        return diferencas;
+    }
+}
@@ -0,0 +1,42 @@
+package br.com.alura.forum.service.estatisticas;
+
+import br.com.alura.forum.modelo.BaldeDeTopicos;
+import br.com.alura.forum.modelo.Topico;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import java.util.Objects;
+
+/*
+    Listener JPA do Topico que passa cada criação, remoção e mudança de balde (status ou curso) para o
+    EstatisticasDeTopicos. Um update que so muda título, mensagem ou contadores não mexe nas estatisticas.
+ */
+public class EstatisticasDeTopicosListener {
+
+    // mesmo ciclo do IndiceDeTopicosListener: o repositório depende do EntityManagerFactory que cria este listener
+    @Autowired
+    private ObjectProvider<EstatisticasDeTopicos> estatisticas;
+
+    @PostPersist
+    public void topicoCriado(Topico topico) {
+        estatisticas.getObject().registrar(topico.getBalde(), 1);
+    }
+
+    @PostUpdate
+    public void topicoAlterado(Topico topico) {
+        BaldeDeTopicos anterior = topico.getBaldeContado();
+        BaldeDeTopicos atual = topico.getBalde();
+        if (!Objects.equals(anterior, atual)) {
+            estatisticas.getObject().registrar(anterior, -1);
+            estatisticas.getObject().registrar(atual, 1);
+        }
+    }
+
+    @PostRemove
+    public void topicoRemovido(Topico topico) {
+        estatisticas.getObject().registrar(topico.getBaldeContado(), -1);
+    }
+}
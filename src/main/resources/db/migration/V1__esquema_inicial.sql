@@ -0,0 +1,75 @@
+/*
+    Esquema do fórum: as tabelas como o Hibernate gerava com o ddl-auto, mais os indices dos caminhos de acesso da
+    API. Daqui para frente toda mudança de tabela ou indice e uma nova migração V<n>__descricao.sql; o Hibernate so
+    valida o mapeamento. O IndicesDasConsultasTest confere que as consultas principais usam estes indices.
+ */
+
+create table usuario (
+    id bigint auto_increment not null,
+    email varchar(255),
+    nome varchar(255),
+    senha varchar(255),
+    constraint pk_usuario primary key (id)
+);
+
+create table curso (
+    id bigint auto_increment not null,
+    categoria varchar(255),
+    nome varchar(255),
+    versao_topicos bigint default 0 not null,
+    constraint pk_curso primary key (id)
+);
+
+-- o Topico usa sequence em vez de IDENTITY para os INSERTs irem em lote (Topico.ALOCACAO_IDS)
+create sequence topico_seq start with 1 increment by 50;
+
+create table topico (
+    id bigint not null,
+    data_criacao timestamp,
+    mensagem varchar(255),
+    quantidade_respostas integer default 0 not null,
+    status varchar(255),
+    titulo varchar(255),
+    ultima_atividade timestamp,
+    versao bigint,
+    autor_id bigint,
+    curso_id bigint,
+    constraint pk_topico primary key (id)
+);
+
+create table resposta (
+    id bigint auto_increment not null,
+    data_criacao timestamp,
+    mensagem varchar(255),
+    solucao boolean,
+    autor_id bigint,
+    topico_id bigint,
+    constraint pk_resposta primary key (id)
+);
+
+/*
+    Os indices vem antes das chaves estrangeiras: assim o banco usa o indice que ja existe para a chave em vez de
+    criar outro so para ela (o H2 cria um indice por chave estrangeira, o PostgreSQL nenhum).
+
+    Os da listagem são descendentes como o ORDER BY do cursor (data desc, id desc); com um indice crescente o H2 não
+    le a página na ordem e ordena a tabela inteira.
+ */
+
+-- CursoRepository.findByNome e o filtro ?nomeCurso= da listagem, que chega pelo nome do curso
+create index idx_curso_nome on curso (nome);
+
+-- listagem sem filtro, por data de criação e por atividade
+create index idx_topico_data_criacao_id on topico (data_criacao desc, id desc);
+create index idx_topico_ultima_atividade_id on topico (ultima_atividade desc, id desc);
+
+-- listagem de um curso: o curso_id na frente e a ordenação do cursor atras; o primeiro serve tambem a chave do curso
+create index idx_topico_curso_data_criacao_id on topico (curso_id, data_criacao desc, id desc);
+create index idx_topico_curso_ultima_atividade_id on topico (curso_id, ultima_atividade desc, id desc);
+
+-- respostas do detalhe do tópico (findDetalhadoById) e o recalculo dos contadores (ReparoDeContadoresService)
+create index idx_resposta_topico_id on resposta (topico_id);
+
+alter table topico add constraint fk_topico_autor foreign key (autor_id) references usuario (id);
+alter table topico add constraint fk_topico_curso foreign key (curso_id) references curso (id);
+alter table resposta add constraint fk_resposta_autor foreign key (autor_id) references usuario (id);
+alter table resposta add constraint fk_resposta_topico foreign key (topico_id) references topico (id);
@@ -0,0 +1,20 @@
+/*
+    Resumo das quantidades de tópicos por curso, status e dia de criação, lido pelo GET /estatisticas e mantido a cada
+    escrita de tópico (EstatisticasDeTopicos). Tópicos sem curso contam no curso_id 0 (BaldeDeTopicos.SEM_CURSO),
+    por isso não ha chave estrangeira para curso.
+ */
+
+create table estatistica_topicos (
+    curso_id bigint not null,
+    status varchar(255) not null,
+    dia date not null,
+    quantidade bigint not null,
+    constraint pk_estatistica_topicos primary key (curso_id, status, dia)
+);
+
+-- os tópicos que ja existem, a mesma conta do EstatisticaTopicosRepositoryImpl.reconstruir
+insert into estatistica_topicos (curso_id, status, dia, quantidade)
+select coalesce(curso_id, 0), status, cast(data_criacao as date), count(*)
+from topico
+where status is not null and data_criacao is not null
+group by coalesce(curso_id, 0), status, cast(data_criacao as date);
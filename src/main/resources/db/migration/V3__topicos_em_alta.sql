@@ -0,0 +1,16 @@
+/*
+    Checkpoint do ranking do GET /topicos/em-alta (TopicosEmAlta), que vive em memória. Cada linha e a pontuação de um
+    tópico no instante calculada_em; na subida ela e trazida para o instante atual com a meia-vida configurada. O
+    curso não e gravado aqui, vem do proprio tópico na leitura.
+ */
+
+create table topico_em_alta (
+    topico_id bigint not null,
+    pontuacao double not null,
+    calculada_em timestamp not null,
+    constraint pk_topico_em_alta primary key (topico_id)
+);
+
+-- o tópico apagado leva junto a sua pontuação, inclusive pelos deletes em massa
+alter table topico_em_alta add constraint fk_topico_em_alta_topico foreign key (topico_id) references topico (id)
+    on delete cascade;
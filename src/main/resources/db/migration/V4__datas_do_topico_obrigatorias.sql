@@ -0,0 +1,25 @@
+/*
+    data_criacao e ultima_atividade são as colunas dos cursores da listagem (ordem de criação e de atividade). Com um
+    valor nulo o tópico some das paginas seguintes, porque "t.data_criacao < ?" nunca e verdadeiro para ele. O Topico
+    sempre preenche as duas, então aqui so sobram linhas gravadas direto no banco.
+ */
+
+-- sem data nenhuma não ha o que recuperar, o tópico fica como criado agora
+update topico set data_criacao = coalesce(ultima_atividade, current_timestamp) where data_criacao is null;
+
+-- a mesma conta do ReparoDeContadoresService
+update topico set ultima_atividade = coalesce((select max(r.data_criacao) from resposta r where r.topico_id = topico.id),
+    data_criacao)
+where ultima_atividade is null;
+
+alter table topico alter column data_criacao set not null;
+alter table topico alter column ultima_atividade set not null;
+
+-- os tópicos que ganharam data agora passam a contar nas estatisticas: a mesma conta do V2, de novo
+delete from estatistica_topicos;
+
+insert into estatistica_topicos (curso_id, status, dia, quantidade)
+select coalesce(curso_id, 0), status, cast(data_criacao as date), count(*)
+from topico
+where status is not null
+group by coalesce(curso_id, 0), status, cast(data_criacao as date);
@@ -0,0 +1,115 @@
+package br.com.alura.forum.partida;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Mede a subida do forum em cada Cenario: tempo do start do processo até o primeiro 200 do GET /topicos (o que um
+    balanceador vê quando a instancia entra), o "Started ForumApplication in" do Spring e o heap depois da primeira
+    requisição, usado e reservado, que e o que a instancia ocupa antes de receber carga.
+
+    Cada rodada sobe uma JVM nova por cenario, alternando os cenarios para que uma variação da maquina afete todos
+    igual. No final imprime mediana, minimo e maximo de cada medida e grava as rodadas em JSON no diretório de saida.
+    Rodar com: ./mvnw -Ppartida -DskipTests verify -Dpartida.args="rodadas=10"
+ */
+public class BenchmarkDePartida {
+
+    private static final String[] MEDIDAS = {"primeiraRequisicaoMs", "subidaDoSpringS", "heapUsadoMb",
+            "heapReservadoMb"};
+
+    public static void main(String[] args) throws Exception {
+        ConfiguracaoDaPartida configuracao = ConfiguracaoDaPartida.de(args);
+        String classpath = configuracao.classpath();
+        File arquivoCds = configuracao.arquivoCds();
+        List<Cenario> cenarios = new ArrayList<>(configuracao.cenarios);
+        if (!arquivoCds.isFile() && cenarios.removeIf(Cenario::usaCds)) {
+            System.out.println("Sem " + arquivoCds + ", os cenarios com CDS ficam de fora (rode o GeradorDeArquivoCds)");
+        }
+
+        Map<Cenario, List<Map<String, Double>>> resultados = new EnumMap<>(Cenario.class);
+        cenarios.forEach(cenario -> resultados.put(cenario, new ArrayList<>()));
+        for (int rodada = 1 - configuracao.aquecimento; rodada <= configuracao.rodadas; rodada++) {
+            for (Cenario cenario : cenarios) {
+                File log = new File(configuracao.saida, "logs/" + cenario + "-" + rodada + ".log");
+                Map<String, Double> medidas = medir(cenario, classpath, arquivoCds, log, configuracao.timeout);
+                System.out.printf("%s %s: %.0f ms%n", rodada < 1 ? "aquecimento" : "rodada " + rodada, cenario,
+                        medidas.get("primeiraRequisicaoMs"));
+                if (rodada >= 1) {
+                    resultados.get(cenario).add(medidas);
+                }
+            }
+        }
+        imprimirEGravar(configuracao, resultados);
+    }
+
+    private static Map<String, Double> medir(Cenario cenario, String classpath, File arquivoCds, File log,
+            int timeout) throws Exception {
+        Map<String, Double> medidas = new LinkedHashMap<>();
+        try (InstanciaDoForum forum = InstanciaDoForum.iniciar(classpath, cenario.opcoesDaJvm(arquivoCds),
+                cenario.argumentos(), log)) {
+            long primeiraRequisicao = forum.esperarPrimeiraRequisicao(timeout);
+            medidas.put("primeiraRequisicaoMs", (double) TimeUnit.NANOSECONDS.toMillis(primeiraRequisicao));
+            medidas.put("subidaDoSpringS", forum.subidaDoSpring());
+            medidas.put("heapUsadoMb", forum.metrica("jvm.memory.used", "area:heap") / (1 << 20));
+            medidas.put("heapReservadoMb", forum.metrica("jvm.memory.committed", "area:heap") / (1 << 20));
+        }
+        return medidas;
+    }
+
+    private static void imprimirEGravar(ConfiguracaoDaPartida configuracao,
+            Map<Cenario, List<Map<String, Double>>> resultados) throws Exception {
+        System.out.printf("%n%-12s %26s %20s %18s %18s%n", "cenario", "primeira req ms (min-max)",
+                "spring s (mediana)", "heap usado MB", "heap reservado MB");
+        Map<String, Object> cenarios = new LinkedHashMap<>();
+        resultados.forEach((cenario, rodadas) -> {
+            Map<String, Object> resumo = new LinkedHashMap<>();
+            for (String medida : MEDIDAS) {
+                List<Double> valores = new ArrayList<>();
+                rodadas.forEach(rodada -> valores.add(rodada.get(medida)));
+                Collections.sort(valores);
+                Map<String, Double> estatisticas = new LinkedHashMap<>();
+                estatisticas.put("mediana", valores.get(valores.size() / 2));
+                estatisticas.put("minimo", valores.get(0));
+                estatisticas.put("maximo", valores.get(valores.size() - 1));
+                resumo.put(medida, estatisticas);
+            }
+            resumo.put("rodadas", rodadas);
+            cenarios.put(cenario.toString(), resumo);
+
+            System.out.printf("%-12s %10.0f (%5.0f-%5.0f) %20.2f %18.1f %18.1f%n", cenario,
+                    mediana(resumo, "primeiraRequisicaoMs"), valor(resumo, "primeiraRequisicaoMs", "minimo"),
+                    valor(resumo, "primeiraRequisicaoMs", "maximo"), mediana(resumo, "subidaDoSpringS"),
+                    mediana(resumo, "heapUsadoMb"), mediana(resumo, "heapReservadoMb"));
+        });
+
+        Map<String, Object> relatorio = new LinkedHashMap<>();
+        relatorio.put("configuracao", configuracao.comoMapa());
+        relatorio.put("cenarios", cenarios);
+        File diretorio = new File(configuracao.saida);
+        diretorio.mkdirs();
+        File arquivo = new File(diretorio,
+                "partida-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(arquivo, relatorio);
+        System.out.println("\nResultado gravado em " + arquivo.getPath());
+    }
+
+    private static double mediana(Map<String, Object> resumo, String medida) {
+        return valor(resumo, medida, "mediana");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static double valor(Map<String, Object> resumo, String medida, String estatistica) {
+        return ((Map<String, Double>) resumo.get(medida)).get(estatistica);
+    }
+}
@@ -0,0 +1,50 @@
+package br.com.alura.forum.partida;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+    Formas de subir a aplicação comparadas pelo BenchmarkDePartida. Cada uma liga uma otimização a mais, para o ganho
+    de cada uma aparecer separado: SEM_INDICE desliga o indice de componentes (o padrão ja usa o spring.components
+    gerado na compilação), RAPIDO e o perfil rapido e os _CDS usam o arquivo do GeradorDeArquivoCds.
+ */
+enum Cenario {
+    SEM_INDICE(false, false, "-Dspring.index.ignore=true"),
+    PADRAO(false, false),
+    CDS(false, true),
+    RAPIDO(true, false),
+    RAPIDO_CDS(true, true);
+
+    private final boolean perfilRapido;
+    private final boolean cds;
+    private final List<String> opcoes = new ArrayList<>();
+
+    Cenario(boolean perfilRapido, boolean cds, String... opcoes) {
+        this.perfilRapido = perfilRapido;
+        this.cds = cds;
+        Collections.addAll(this.opcoes, opcoes);
+    }
+
+    List<String> opcoesDaJvm(File arquivoCds) {
+        List<String> opcoes = new ArrayList<>(this.opcoes);
+        if (cds) {
+            opcoes.add("-XX:SharedArchiveFile=" + arquivoCds.getPath());
+        }
+        return opcoes;
+    }
+
+    List<String> argumentos() {
+        return perfilRapido ? Collections.singletonList("--spring.profiles.active=rapido") : Collections.emptyList();
+    }
+
+    boolean usaCds() {
+        return cds;
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase().replace('_', '-');
+    }
+}
@@ -0,0 +1,81 @@
+package br.com.alura.forum.partida;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/*
+    Parâmetros do BenchmarkDePartida e do GeradorDeArquivoCds, passados como argumentos chave=valor (por exemplo
+    "rodadas=10 cenarios=padrao,rapido"). O jar e o arquivo com as dependências vem do perfil partida do pom.
+ */
+class ConfiguracaoDaPartida {
+
+    String jar; // classes da aplicação num jar comum: o CDS não arquiva classes lidas de diretórios
+    String dependencias; // arquivo com o classpath de runtime, sem o devtools (dependency:build-classpath)
+    String saida = "target/partida";
+    int rodadas = 5;
+    int aquecimento = 1; // rodadas descartadas, para o disco e o cache do sistema operacional aquecerem
+    int timeout = 120; // segundos para a aplicação responder a primeira requisição
+    List<Cenario> cenarios = new ArrayList<>(Arrays.asList(Cenario.values()));
+
+    static ConfiguracaoDaPartida de(String[] args) {
+        ConfiguracaoDaPartida configuracao = new ConfiguracaoDaPartida();
+        for (String arg : args) {
+            int igual = arg.indexOf('=');
+            if (igual < 0) {
+                throw new IllegalArgumentException("Argumento invalido, use chave=valor: " + arg);
+            }
+            String chave = arg.substring(0, igual);
+            String valor = arg.substring(igual + 1);
+            switch (chave) {
+                case "jar": configuracao.jar = valor; break;
+                case "dependencias": configuracao.dependencias = valor; break;
+                case "saida": configuracao.saida = valor; break;
+                case "rodadas": configuracao.rodadas = Integer.parseInt(valor); break;
+                case "aquecimento": configuracao.aquecimento = Integer.parseInt(valor); break;
+                case "timeout": configuracao.timeout = Integer.parseInt(valor); break;
+                case "cenarios": configuracao.cenarios = cenarios(valor); break;
+                default: throw new IllegalArgumentException("Parametro desconhecido: " + chave);
+            }
+        }
+        if (configuracao.jar == null || configuracao.dependencias == null) {
+            throw new IllegalArgumentException("Informe jar= e dependencias= (rode pelo perfil partida do pom)");
+        }
+        return configuracao;
+    }
+
+    // formato: padrao,rapido,rapido-cds
+    private static List<Cenario> cenarios(String valor) {
+        List<Cenario> cenarios = new ArrayList<>();
+        for (String nome : valor.split(",")) {
+            cenarios.add(Cenario.valueOf(nome.trim().toUpperCase().replace('-', '_')));
+        }
+        return cenarios;
+    }
+
+    String classpath() throws IOException {
+        String libs = new String(Files.readAllBytes(new File(dependencias).toPath()), StandardCharsets.UTF_8).trim();
+        return new File(jar).getAbsolutePath() + File.pathSeparator + libs;
+    }
+
+    File arquivoCds() {
+        return new File(saida, "forum.jsa").getAbsoluteFile();
+    }
+
+    Map<String, Object> comoMapa() {
+        Map<String, Object> mapa = new LinkedHashMap<>();
+        mapa.put("rodadas", rodadas);
+        mapa.put("aquecimento", aquecimento);
+        mapa.put("cenarios", cenarios.stream().map(Cenario::toString).collect(Collectors.toList()));
+        mapa.put("java", System.getProperty("java.version"));
+        mapa.put("processadores", Runtime.getRuntime().availableProcessors());
+        return mapa;
+    }
+}
@@ -0,0 +1,60 @@
+package br.com.alura.forum.partida;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Gera o arquivo de Class Data Sharing da aplicação (target/partida/forum.jsa): sobe o forum no perfil rapido com
+    -XX:ArchiveClassesAtExit, faz as requisições que toda instancia recebe logo que entra no balanceador e desliga.
+    Na saida a JVM grava as classes carregadas ja verificadas e no formato interno dela, e as proximas subidas com
+    -XX:SharedArchiveFile mapeiam o arquivo em vez de ler e verificar cada classe dos jars.
+
+    Precisa do JDK 13 ou mais novo. O arquivo so vale para o mesmo JDK e o mesmo classpath (na mesma ordem), por isso
+    junto dele fica o forum.args com as duas opções; para subir com ele:
+
+        java @target/partida/forum.args br.com.alura.forum.ForumApplication --spring.profiles.active=rapido
+ */
+public class GeradorDeArquivoCds {
+
+    public static void main(String[] args) throws Exception {
+        ConfiguracaoDaPartida configuracao = ConfiguracaoDaPartida.de(args);
+        File arquivo = configuracao.arquivoCds();
+        Files.deleteIfExists(arquivo.toPath());
+
+        String classpath = configuracao.classpath();
+        File log = new File(configuracao.saida, "treino-cds.log");
+        long inicio = System.nanoTime();
+        try (InstanciaDoForum forum = InstanciaDoForum.iniciar(classpath,
+                Collections.singletonList("-XX:ArchiveClassesAtExit=" + arquivo.getPath()),
+                Cenario.RAPIDO.argumentos(), log)) {
+            forum.esperarPrimeiraRequisicao(configuracao.timeout);
+            // as classes do detalhe, do 404, das métricas e do health tambem entram no arquivo
+            for (String caminho : Arrays.asList("/topicos?nomeCurso=Spring+Boot", "/topicos/1",
+                    "/actuator/health", "/actuator/prometheus")) {
+                forum.status(caminho);
+            }
+        }
+        if (!arquivo.isFile()) {
+            throw new IllegalStateException("A JVM não gravou o arquivo CDS, veja " + log);
+        }
+
+        File opcoes = new File(configuracao.saida, "forum.args");
+        String conteudo = "-XX:SharedArchiveFile=" + argumento(arquivo.getPath()) + "\n"
+                + "-cp " + argumento(classpath) + "\n";
+        Files.write(opcoes.toPath(), conteudo.getBytes(StandardCharsets.UTF_8));
+
+        System.out.printf("Arquivo CDS gerado em %d s: %s (%d MB)%nOpções da JVM para usa-lo: @%s%n",
+                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - inicio), arquivo, arquivo.length() >> 20,
+                opcoes.getAbsolutePath());
+    }
+
+    // no arquivo de argumentos da JVM as aspas protegem os espaços e a barra invertida e escape
+    private static String argumento(String valor) {
+        return "\"" + valor.replace("\\", "\\\\") + "\"";
+    }
+}
@@ -0,0 +1,140 @@
+package br.com.alura.forum.partida;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+    Um ForumApplication rodando numa JVM separada, como sobe em produção: classpath sem o devtools, porta livre
+    escolhida aqui e a saida do processo num arquivo de log. O relogio começa antes do ProcessBuilder.start, então o
+    tempo até a primeira requisição inclui a subida da JVM.
+ */
+class InstanciaDoForum implements AutoCloseable {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final Pattern SUBIDA_DO_SPRING = Pattern.compile("Started ForumApplication in ([0-9.]+) seconds");
+
+    private final Process processo;
+    private final File log;
+    private final String baseUrl;
+    private final long inicio;
+
+    private InstanciaDoForum(Process processo, File log, int porta, long inicio) {
+        this.processo = processo;
+        this.log = log;
+        this.baseUrl = "http://localhost:" + porta;
+        this.inicio = inicio;
+    }
+
+    static InstanciaDoForum iniciar(String classpath, List<String> opcoesDaJvm, List<String> argumentos, File log)
+            throws IOException {
+        int porta = portaLivre();
+        List<String> comando = new ArrayList<>();
+        comando.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        comando.addAll(opcoesDaJvm);
+        comando.add("-cp");
+        comando.add(classpath);
+        comando.add("br.com.alura.forum.ForumApplication");
+        comando.add("--server.port=" + porta);
+        comando.addAll(argumentos);
+
+        log.getParentFile().mkdirs();
+        ProcessBuilder builder = new ProcessBuilder(comando).redirectErrorStream(true).redirectOutput(log);
+        long inicio = System.nanoTime();
+        return new InstanciaDoForum(builder.start(), log, porta, inicio);
+    }
+
+    // nanos desde o start do processo até o primeiro 200 do GET /topicos
+    long esperarPrimeiraRequisicao(long timeoutSegundos) throws IOException, InterruptedException {
+        long limite = inicio + TimeUnit.SECONDS.toNanos(timeoutSegundos);
+        while (System.nanoTime() < limite) {
+            if (!processo.isAlive()) {
+                throw new IllegalStateException("A aplicação terminou durante a subida, veja " + log);
+            }
+            try {
+                if (status("/topicos") == 200) {
+                    return System.nanoTime() - inicio;
+                }
+            } catch (IOException e) {
+                // servidor ainda não esta ouvindo na porta
+            }
+            Thread.sleep(5);
+        }
+        throw new IllegalStateException("A aplicação não respondeu em " + timeoutSegundos + " s, veja " + log);
+    }
+
+    int status(String caminho) throws IOException {
+        HttpURLConnection conexao = conectar(caminho);
+        try {
+            int status = conexao.getResponseCode();
+            descartar(status < 400 ? conexao.getInputStream() : conexao.getErrorStream());
+            return status;
+        } finally {
+            conexao.disconnect();
+        }
+    }
+
+    // valor atual de uma métrica do /actuator/metrics, por exemplo ("jvm.memory.used", "area:heap")
+    double metrica(String nome, String tag) throws IOException {
+        HttpURLConnection conexao = conectar("/actuator/metrics/" + nome + "?tag=" + tag);
+        try (InputStream corpo = conexao.getInputStream()) {
+            JsonNode medidas = OBJECT_MAPPER.readTree(corpo).get("measurements");
+            return medidas.get(0).get("value").asDouble();
+        } finally {
+            conexao.disconnect();
+        }
+    }
+
+    // segundos do "Started ForumApplication in ..." do log, a conta que o proprio Spring faz da subida
+    double subidaDoSpring() throws IOException {
+        Matcher matcher = SUBIDA_DO_SPRING.matcher(new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8));
+        return matcher.find() ? Double.parseDouble(matcher.group(1)) : Double.NaN;
+    }
+
+    // SIGTERM, para a JVM terminar normalmente (e gravar o arquivo CDS, no treino)
+    @Override
+    public void close() throws InterruptedException {
+        processo.destroy();
+        if (!processo.waitFor(60, TimeUnit.SECONDS)) {
+            processo.destroyForcibly().waitFor();
+        }
+    }
+
+    private HttpURLConnection conectar(String caminho) throws IOException {
+        HttpURLConnection conexao = (HttpURLConnection) new URL(baseUrl + caminho).openConnection();
+        conexao.setConnectTimeout(1000);
+        conexao.setReadTimeout(30000);
+        conexao.setRequestProperty("Accept", "application/json");
+        return conexao;
+    }
+
+    private static void descartar(InputStream corpo) throws IOException {
+        if (corpo != null) {
+            try (InputStream entrada = corpo) {
+                byte[] buffer = new byte[8192];
+                while (entrada.read(buffer) >= 0) {
+                    // so consome a resposta, para a conexão voltar ao keep-alive
+                }
+            }
+        }
+    }
+
+    private static int portaLivre() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
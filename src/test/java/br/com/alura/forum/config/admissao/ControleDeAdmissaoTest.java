@@ -0,0 +1,110 @@
+package br.com.alura.forum.config.admissao;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/*
+    Os dois filtros do ControleDeAdmissaoInterceptor: o balde de cada cliente, com o cliente lido do X-Forwarded-For
+    so quando a requisição vem de um proxy confiavel, e as vagas de concorrência, que o stream devolve assim que a
+    resposta fica assíncrona. Cada teste usa endereços proprios, porque os baldes são do contexto inteiro.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class ControleDeAdmissaoTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Value("${forum.admissao.rajada}")
+    private int rajada;
+
+    @Value("${forum.admissao.concorrencia-baratos}")
+    private int concorrenciaBaratos;
+
+    @Test
+    public void clienteAtrasDoProxyDevePassarDoLimiteSozinho() throws Exception {
+        /*
+            O proxy (127.0.0.1, o endereço padrão do MockMvc) encaminha o mesmo cliente ate ele passar da rajada. O
+            endereço mais a esquerda, que o proprio cliente pode escrever, muda a cada requisição: se ele fosse usado,
+            nenhuma seria recusada.
+         */
+        MockHttpServletResponse recusada = null;
+        int admitidas = 0;
+        while (recusada == null && admitidas < rajada * 3) {
+            MockHttpServletResponse resposta = detalhe("192.0.2." + admitidas % 250 + ", 203.0.113.10")
+                    .andReturn().getResponse();
+            if (resposta.getStatus() == HttpStatus.TOO_MANY_REQUESTS.value()) {
+                recusada = resposta;
+            } else {
+                admitidas++;
+            }
+        }
+        assertNotEquals("o cliente nunca recebeu 429", null, recusada);
+        assertEquals("1", recusada.getHeader(HttpHeaders.RETRY_AFTER));
+
+        // outro cliente atras do mesmo proxy tem o seu proprio balde
+        assertNotEquals(HttpStatus.TOO_MANY_REQUESTS.value(),
+                detalhe("203.0.113.11").andReturn().getResponse().getStatus());
+        // e quem não e proxy não escolhe o balde pelo cabeçalho: o do cliente recusado não vale para ele
+        assertNotEquals(HttpStatus.TOO_MANY_REQUESTS.value(),
+                mvc.perform(get("/topicos/{id}", Long.MAX_VALUE).header("X-Forwarded-For", "203.0.113.10")
+                        .with(requisicao -> {
+                            requisicao.setRemoteAddr("198.51.100.20");
+                            return requisicao;
+                        }))
+                        .andReturn().getResponse().getStatus());
+    }
+
+    @Test
+    public void streamsDevemDevolverAVagaAoFicaremAssincronos() throws Exception {
+        List<MvcResult> streams = new ArrayList<>();
+        try {
+            // mais streams abertos do que vagas: cada um devolve a sua antes do proximo pedir
+            for (int i = 0; i <= concorrenciaBaratos; i++) {
+                streams.add(mvc.perform(get("/topicos/stream").param("nomeCurso", "Admissao")
+                        .header("X-Forwarded-For", "203.0.113." + (100 + i % 50)))
+                        .andExpect(request().asyncStarted())
+                        .andReturn());
+            }
+            assertEquals(concorrenciaBaratos, vagasBaratas(), 0);
+
+            // e as requisições normais devolvem a sua no fim
+            detalhe("203.0.113.30");
+            assertEquals(concorrenciaBaratos, vagasBaratas(), 0);
+        } finally {
+            streams.forEach(stream -> stream.getRequest().getAsyncContext().complete());
+        }
+    }
+
+    private ResultActions detalhe(String cliente) throws Exception {
+        return mvc.perform(get("/topicos/{id}", Long.MAX_VALUE).header("X-Forwarded-For", cliente));
+    }
+
+    private double vagasBaratas() {
+        return registry.get("forum.admissao.vagas").tag("custo", "barato").gauge().value();
+    }
+}
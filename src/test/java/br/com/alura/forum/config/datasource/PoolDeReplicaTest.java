@@ -0,0 +1,65 @@
+package br.com.alura.forum.config.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.After;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/*
+    Pool cheio não e réplica fora: so a falha ao abrir conexão tira a réplica do rodizio.
+ */
+public class PoolDeReplicaTest {
+
+    private PoolDeReplica replica;
+
+    @After
+    public void after() {
+        replica.fechar();
+    }
+
+    @Test
+    public void poolCheioNaoDeveTirarAReplicaDoRodizio() throws SQLException {
+        replica = replica("jdbc:h2:mem:replica-cheia;DB_CLOSE_DELAY=-1");
+        try (Connection emUso = replica.getConnection()) {
+            assertFalha(SQLTransientConnectionException.class);
+            assertTrue(replica.isSaudavel());
+
+            replica.verificar();
+            assertTrue(replica.isSaudavel());
+        }
+    }
+
+    @Test
+    public void falhaAoConectarDeveTirarAReplicaDoRodizio() {
+        replica = replica("jdbc:h2:tcp://localhost:1/mem:replica-fora");
+        assertFalha(SQLException.class);
+        assertFalse(replica.isSaudavel());
+    }
+
+    private void assertFalha(Class<? extends SQLException> tipo) {
+        try (Connection conexao = replica.getConnection()) {
+            fail("a réplica não deveria ter entregado a conexão");
+        } catch (SQLException e) {
+            assertTrue(String.valueOf(e), tipo.isInstance(e));
+        }
+    }
+
+    private static PoolDeReplica replica(String url) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setPoolName("replica-teste");
+        pool.setJdbcUrl(url);
+        pool.setUsername("sa");
+        pool.setPassword("");
+        pool.setMaximumPoolSize(1);
+        pool.setConnectionTimeout(1000);
+        pool.setInitializationFailTimeout(-1);
+        return new PoolDeReplica(pool.getPoolName(), pool);
+    }
+}
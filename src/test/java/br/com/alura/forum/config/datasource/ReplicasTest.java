@@ -0,0 +1,164 @@
+package br.com.alura.forum.config.datasource;
+
+import org.flywaydb.core.Flyway;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManager;
+import javax.servlet.http.Cookie;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+    O roteamento do DataSourceComReplicas com uma réplica que e outro banco: um H2 em memória proprio, com o esquema
+    das mesmas migrações. O mesmo tópico tem um titulo em cada banco, então a resposta mostra de onde a leitura veio.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "forum.datasource.replicas[0].url=" + ReplicasTest.REPLICA,
+        "forum.datasource.replicas[0].username=sa",
+        "forum.datasource.replicas[0].password="})
+@AutoConfigureMockMvc
+public class ReplicasTest {
+
+    static final String REPLICA = "jdbc:h2:mem:replica-teste;DB_CLOSE_DELAY=-1";
+
+    private static final long ID = 9_100_001;
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    // fora de uma transação o JdbcTemplate da aplicação vai para o primário
+    @Autowired
+    private JdbcTemplate primario;
+
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA, "sa", ""));
+
+    @BeforeClass
+    public static void criarReplica() {
+        Flyway.configure().dataSource(REPLICA, "sa", "").load().migrate();
+    }
+
+    @Before
+    public void before() {
+        inserir(primario, "No primario");
+        inserir(replica, "Na replica");
+    }
+
+    @After
+    public void after() {
+        for (JdbcTemplate banco : new JdbcTemplate[]{primario, replica}) {
+            banco.update("delete from topico");
+            banco.update("delete from curso");
+            banco.update("delete from usuario where id = ?", ID);
+            banco.update("delete from estatistica_topicos");
+        }
+        limparCache();
+    }
+
+    @Test
+    public void leituraDeveIrParaAReplicaEEscritaParaOPrimario() throws Exception {
+        mvc.perform(get("/topicos/{id}", ID))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.titulo").value("Na replica"))
+                .andExpect(cookie().doesNotExist(LeituraAposEscritaFilter.COOKIE));
+
+        Cookie escrita = mvc.perform(post("/topicos").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"titulo\":\"Escrito agora\",\"mensagem\":\"Mensagem\",\"nomeCurso\":\"Replicas\"}"))
+                .andExpect(status().isCreated())
+                .andExpect(cookie().exists(LeituraAposEscritaFilter.COOKIE))
+                .andReturn().getResponse().getCookie(LeituraAposEscritaFilter.COOKIE);
+        assertEquals(Integer.valueOf(1), contarEscritos(primario));
+        assertEquals(Integer.valueOf(0), contarEscritos(replica));
+
+        // com o cookie da escrita o mesmo cliente le do primário, os outros continuam na réplica
+        limparCache();
+        mvc.perform(get("/topicos/{id}", ID).cookie(escrita))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.titulo").value("No primario"));
+        limparCache();
+        mvc.perform(get("/topicos/{id}", ID))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.titulo").value("Na replica"));
+    }
+
+    @Test
+    public void escritaDepoisDeUmaLeituraNaMesmaRequisicaoDeveIrParaOPrimario() throws Exception {
+        // o serviço busca o curso numa transação readOnly e so depois abre as transações de escrita
+        mvc.perform(patch("/topicos/status").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"novoStatus\":\"FECHADO\",\"nomeCurso\":\"Replicas\",\"statusAtual\":\"NAO_RESPONDIDO\","
+                        + "\"criadosAntesDe\":\"2019-06-01T00:00:00\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.alterados").value(1));
+
+        assertEquals("FECHADO", statusDoTopico(primario));
+        assertEquals("NAO_RESPONDIDO", statusDoTopico(replica));
+    }
+
+    @Test
+    public void leituraNaReplicaAtrasadaNaoDeveFicarNoCacheDeConsultas() throws Exception {
+        // a réplica não recebe o tópico novo, como uma réplica atrasada
+        Cookie escrita = mvc.perform(post("/topicos").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"titulo\":\"Escrito agora\",\"mensagem\":\"Mensagem\",\"nomeCurso\":\"Replicas\"}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getCookie(LeituraAposEscritaFilter.COOKIE);
+
+        // quem não escreveu le da réplica, logo depois da invalidação do cache de consultas pelo cadastro
+        mvc.perform(get("/topicos").param("nomeCurso", "Replicas"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].titulo").value("Na replica"));
+
+        // e quem escreveu encontra o tópico: a página da réplica não ficou no cache
+        mvc.perform(get("/topicos").param("nomeCurso", "Replicas").cookie(escrita))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].titulo").value("Escrito agora"))
+                .andExpect(jsonPath("$[1].titulo").value("No primario"));
+    }
+
+    private String statusDoTopico(JdbcTemplate banco) {
+        return banco.queryForObject("select status from topico where id = ?", String.class, ID);
+    }
+
+    private Integer contarEscritos(JdbcTemplate banco) {
+        return banco.queryForObject("select count(*) from topico where titulo = 'Escrito agora'", Integer.class);
+    }
+
+    // o segundo nivel e compartilhado pelos dois bancos: sem limpar, a leitura seguinte nem chegaria a um deles
+    private void limparCache() {
+        entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getCache().evictAllRegions();
+    }
+
+    private static void inserir(JdbcTemplate banco, String titulo) {
+        Timestamp criacao = Timestamp.valueOf(LocalDateTime.of(2019, 5, 1, 10, 0));
+        banco.update("insert into usuario (id, nome, email) values (?, 'Aluno', 'replicas@email.com')", ID);
+        banco.update("insert into curso (id, nome, categoria) values (?, 'Replicas', 'Programacao')", ID);
+        banco.update("insert into topico (id, titulo, mensagem, data_criacao, ultima_atividade, status, versao, "
+                + "autor_id, curso_id) values (?, ?, 'Mensagem', ?, ?, 'NAO_RESPONDIDO', 0, ?, ?)", ID, titulo,
+                criacao, criacao, ID, ID);
+    }
+}
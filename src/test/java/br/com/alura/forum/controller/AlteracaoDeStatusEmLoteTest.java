@@ -0,0 +1,144 @@
+package br.com.alura.forum.controller;
+
+import br.com.alura.forum.service.estatisticas.EstatisticasDeTopicos;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManager;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+    PATCH /topicos/status com lotes de três tópicos e os tópicos alterados espalhados por ids distantes: o keyset do
+    AlteracaoDeStatusEmLoteService pula os buracos, então são dois lotes (três tópicos e depois um). Os tópicos são
+    inseridos por JDBC com ids escolhidos (longe dos da sequence) e as estatisticas partem de um reconstruir.
+    Sem @Transactional: cada lote e uma transação do serviço.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "forum.status-em-lote.tamanho=3")
+@AutoConfigureMockMvc
+public class AlteracaoDeStatusEmLoteTest {
+
+    private static final long BASE = 9_000_000;
+    private static final LocalDateTime MAIO = LocalDateTime.of(2019, 5, 1, 10, 0);
+    private static final LocalDateTime JULHO = LocalDateTime.of(2019, 7, 1, 10, 0);
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EstatisticasDeTopicos estatisticasDeTopicos;
+
+    private long moderacao;
+
+    @Before
+    public void before() {
+        moderacao = curso(1, "Moderacao");
+        long outro = curso(2, "Outro curso");
+        // os que mudam: dois no começo e dois mais de mil ids depois
+        topico(1, moderacao, "NAO_RESPONDIDO", MAIO);
+        topico(2, moderacao, "NAO_RESPONDIDO", MAIO);
+        topico(1500, moderacao, "NAO_RESPONDIDO", MAIO);
+        topico(2100, moderacao, "NAO_RESPONDIDO", MAIO);
+        // os que ficam: de outro curso, ja fechado, criado depois da data e em outro status
+        topico(3, outro, "NAO_RESPONDIDO", MAIO);
+        topico(4, moderacao, "FECHADO", MAIO);
+        topico(5, moderacao, "NAO_RESPONDIDO", JULHO);
+        topico(1600, moderacao, "NAO_SOLUCIONADO", MAIO);
+        estatisticasDeTopicos.reconstruir();
+    }
+
+    @After
+    public void after() {
+        jdbcTemplate.update("delete from topico");
+        jdbcTemplate.update("delete from curso");
+        jdbcTemplate.update("delete from estatistica_topicos");
+        entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getCache().evictAllRegions();
+    }
+
+    @Test
+    public void alteracaoDeveMudarSoOsTopicosDoFiltroEmUmaTransacaoPorLote() throws Exception {
+        mvc.perform(patch("/topicos/status").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"novoStatus\":\"FECHADO\",\"nomeCurso\":\"Moderacao\",\"statusAtual\":\"NAO_RESPONDIDO\","
+                        + "\"criadosAntesDe\":\"2019-06-01T00:00:00\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.alterados").value(4))
+                .andExpect(jsonPath("$.transacoes").value(2));
+
+        for (long alterado : new long[]{1, 2, 1500, 2100}) {
+            assertTopico(alterado, "FECHADO", 1);
+        }
+        assertTopico(3, "NAO_RESPONDIDO", 0);
+        assertTopico(4, "FECHADO", 0);
+        assertTopico(5, "NAO_RESPONDIDO", 0);
+        assertTopico(1600, "NAO_SOLUCIONADO", 0);
+
+        // cada tópico saiu do balde em que estava e entrou no do novo status
+        assertEquals(0, balde("NAO_RESPONDIDO", MAIO));
+        assertEquals(5, balde("FECHADO", MAIO));
+        assertEquals(1, balde("NAO_RESPONDIDO", JULHO));
+        assertEquals(1, balde("NAO_SOLUCIONADO", MAIO));
+        // e o resultado e o mesmo de contar tudo de novo
+        List<Map<String, Object>> incrementais = baldes();
+        estatisticasDeTopicos.reconstruir();
+        assertEquals(baldes(), incrementais);
+
+        // repetir não acha mais nada para mudar
+        mvc.perform(patch("/topicos/status").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"novoStatus\":\"FECHADO\",\"nomeCurso\":\"Moderacao\",\"statusAtual\":\"NAO_RESPONDIDO\","
+                        + "\"criadosAntesDe\":\"2019-06-01T00:00:00\"}"))
+                .andExpect(jsonPath("$.alterados").value(0));
+    }
+
+    private void assertTopico(long id, String status, long versao) {
+        Map<String, Object> topico = jdbcTemplate.queryForMap("select status, versao from topico where id = ?",
+                BASE + id);
+        assertEquals("topico " + id, status, topico.get("status"));
+        assertEquals("topico " + id, versao, ((Number) topico.get("versao")).longValue());
+    }
+
+    private long balde(String status, LocalDateTime dia) {
+        return jdbcTemplate.queryForObject("select coalesce(sum(quantidade), 0) from estatistica_topicos "
+                + "where curso_id = ? and status = ? and dia = cast(? as date)", Long.class, moderacao, status,
+                Timestamp.valueOf(dia));
+    }
+
+    private List<Map<String, Object>> baldes() {
+        return jdbcTemplate.queryForList("select curso_id, status, dia, quantidade from estatistica_topicos "
+                + "where quantidade <> 0 order by curso_id, status, dia");
+    }
+
+    private long curso(long id, String nome) {
+        jdbcTemplate.update("insert into curso (id, nome, categoria) values (?, ?, 'Programacao')", BASE + id, nome);
+        return BASE + id;
+    }
+
+    private void topico(long id, long curso, String status, LocalDateTime dataCriacao) {
+        jdbcTemplate.update("insert into topico (id, titulo, mensagem, data_criacao, ultima_atividade, status, versao, "
+                + "curso_id) values (?, ?, 'Mensagem', ?, ?, ?, 0, ?)", BASE + id, "Topico " + id,
+                Timestamp.valueOf(dataCriacao), Timestamp.valueOf(dataCriacao), status, curso);
+    }
+}
@@ -0,0 +1,97 @@
+package br.com.alura.forum.controller;
+
+import br.com.alura.forum.modelo.Curso;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+    POST /topicos/lote: os tópicos tem que ser gravados em lotes do JDBC (poucos statements preparados e poucas
+    idas ao banco para muitos INSERTs), e um item invalido recusa o lote inteiro com o indice do item no erro.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+public class CadastroEmLoteTest {
+
+    // passa de um batch_size (50) para o cadastro mandar mais de um lote
+    private static final int QUANTIDADE = 120;
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    public void loteDeveGravarTodosOsTopicosEmBatchesDoJdbc() throws Exception {
+        curso("Lote");
+        curso("Outro lote");
+        entityManager.flush();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        StringBuilder corpo = new StringBuilder("{\"topicos\":[");
+        for (int i = 0; i < QUANTIDADE; i++) {
+            corpo.append(i == 0 ? "" : ",")
+                    .append("{\"titulo\":\"Topico ").append(i).append("\",\"mensagem\":\"Mensagem ").append(i)
+                    .append("\",\"nomeCurso\":\"").append(i % 2 == 0 ? "Lote" : "Outro lote").append("\"}");
+        }
+        corpo.append("]}");
+
+        mvc.perform(post("/topicos/lote").contentType(MediaType.APPLICATION_JSON).content(corpo.toString()))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.length()").value(QUANTIDADE))
+                .andExpect(jsonPath("$[0].titulo").value("Topico 0"))
+                .andExpect(jsonPath("$[" + (QUANTIDADE - 1) + "].titulo").value("Topico " + (QUANTIDADE - 1)));
+
+        assertEquals(QUANTIDADE, statistics.getEntityInsertCount());
+        // um select dos cursos, as chamadas da sequence (uma a cada 50 ids) e um statement por lote de INSERTs
+        assertTrue("statements: " + statistics.getPrepareStatementCount(),
+                statistics.getPrepareStatementCount() <= 10);
+        assertEquals(Long.valueOf(QUANTIDADE / 2), entityManager.createQuery(
+                "select count(t) from Topico t where t.curso.nome = 'Lote'", Long.class).getSingleResult());
+    }
+
+    @Test
+    public void itemInvalidoDeveRecusarOLoteInteiro() throws Exception {
+        curso("Lote");
+        String corpo = "{\"topicos\":[{\"titulo\":\"Topico valido\",\"mensagem\":\"Mensagem\",\"nomeCurso\":\"Lote\"},"
+                + "{\"titulo\":\"Curto\",\"mensagem\":\"\",\"nomeCurso\":\"Lote\"}]}";
+
+        mvc.perform(post("/topicos/lote").contentType(MediaType.APPLICATION_JSON).content(corpo))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$[0].campo").value("topicos[1].mensagem"));
+
+        assertEquals(Long.valueOf(0), entityManager.createQuery(
+                "select count(t) from Topico t where t.curso.nome = 'Lote'", Long.class).getSingleResult());
+    }
+
+    private void curso(String nome) {
+        Curso curso = new Curso();
+        curso.setNome(nome);
+        curso.setCategoria("Programacao");
+        entityManager.persist(curso);
+    }
+}
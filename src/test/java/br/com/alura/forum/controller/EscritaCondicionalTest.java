@@ -0,0 +1,129 @@
+package br.com.alura.forum.controller;
+
+import br.com.alura.forum.modelo.Curso;
+import br.com.alura.forum.modelo.Topico;
+import br.com.alura.forum.modelo.Usuario;
+import br.com.alura.forum.repository.CursoRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+    PATCH e DELETE com If-Match: a escrita so acontece na versão do ETag, e a versão da listagem do curso so sobe
+    quando a escrita acontece.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+public class EscritaCondicionalTest {
+
+    private static final String ALTERACAO = "{\"titulo\":\"Titulo alterado\",\"mensagem\":\"Mensagem alterada\"}";
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private CursoRepository cursoRepository;
+
+    private Long id;
+
+    @Before
+    public void before() {
+        Curso curso = new Curso();
+        curso.setNome("Escrita condicional");
+        curso.setCategoria("Programacao");
+        entityManager.persist(curso);
+        Usuario autor = new Usuario();
+        autor.setNome("Aluno");
+        autor.setEmail("escrita@email.com");
+        entityManager.persist(autor);
+        Topico topico = new Topico("Titulo original", "Mensagem original", curso);
+        topico.setAutor(autor);
+        entityManager.persist(topico);
+        entityManager.flush();
+        id = topico.getId();
+    }
+
+    @Test
+    public void patchDeveAlterarSoNaVersaoDoEtag() throws Exception {
+        String etag = etag();
+        Long versaoDaListagem = versaoDaListagem();
+
+        mvc.perform(patch("/topicos/{id}", id).contentType(MediaType.APPLICATION_JSON).content(ALTERACAO))
+                .andExpect(status().isPreconditionRequired());
+        mvc.perform(patch("/topicos/{id}", id).contentType(MediaType.APPLICATION_JSON).content(ALTERACAO)
+                .header(HttpHeaders.IF_MATCH, "\"topico-999\""))
+                .andExpect(status().isConflict());
+        assertEquals(versaoDaListagem, versaoDaListagem());
+
+        String novoEtag = mvc.perform(patch("/topicos/{id}", id).contentType(MediaType.APPLICATION_JSON)
+                .content(ALTERACAO).header(HttpHeaders.IF_MATCH, etag))
+                .andExpect(status().isNoContent())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        entityManager.clear();
+        mvc.perform(get("/topicos/{id}", id))
+                .andExpect(header().string(HttpHeaders.ETAG, novoEtag))
+                .andExpect(jsonPath("$.titulo").value("Titulo alterado"));
+        assertEquals(Long.valueOf(versaoDaListagem + 1), versaoDaListagem());
+
+        // o ETag antigo não vale mais
+        mvc.perform(patch("/topicos/{id}", id).contentType(MediaType.APPLICATION_JSON).content(ALTERACAO)
+                .header(HttpHeaders.IF_MATCH, etag))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    public void deleteDeveRemoverSoNaVersaoDoEtag() throws Exception {
+        String etag = etag();
+        Long versaoDaListagem = versaoDaListagem();
+
+        mvc.perform(delete("/topicos/{id}", id).header(HttpHeaders.IF_MATCH, "\"topico-999\""))
+                .andExpect(status().isConflict());
+        mvc.perform(delete("/topicos/{id}", id).header(HttpHeaders.IF_MATCH, "nao-e-um-etag"))
+                .andExpect(status().isConflict());
+        // o 409 não mexe na listagem do curso
+        assertEquals(versaoDaListagem, versaoDaListagem());
+
+        mvc.perform(delete("/topicos/{id}", id).header(HttpHeaders.IF_MATCH, etag))
+                .andExpect(status().isOk());
+        assertEquals(Long.valueOf(versaoDaListagem + 1), versaoDaListagem());
+        mvc.perform(delete("/topicos/{id}", id).header(HttpHeaders.IF_MATCH, etag))
+                .andExpect(status().isNotFound());
+        // sem If-Match o DELETE continua sendo a remoção incondicional de antes, e não um 428; o clear tira do
+        // contexto da transação do teste o tópico que o delete em massa removeu
+        entityManager.clear();
+        mvc.perform(delete("/topicos/{id}", id)).andExpect(status().isNotFound());
+    }
+
+    private String etag() throws Exception {
+        return mvc.perform(get("/topicos/{id}", id))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    private Long versaoDaListagem() {
+        return cursoRepository.versaoDosTopicos("Escrita condicional");
+    }
+}
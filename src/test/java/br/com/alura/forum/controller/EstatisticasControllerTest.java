@@ -0,0 +1,117 @@
+package br.com.alura.forum.controller;
+
+import br.com.alura.forum.modelo.Curso;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+    Sem @Transactional: as estatisticas so são gravadas no commit, então cada requisição precisa da sua transação de
+    verdade. Os dados criados aqui são apagados no @After.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class EstatisticasControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @After
+    public void after() {
+        jdbcTemplate.update("delete from topico");
+        jdbcTemplate.update("delete from curso");
+        jdbcTemplate.update("delete from estatistica_topicos");
+        // os deletes por JDBC não passam pelo Hibernate, então os cursos em cache (e o findByNome) são descartados aqui
+        entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getCache().evictAllRegions();
+    }
+
+    @Test
+    public void estatisticasDevemAcompanharCadastroStatusERemocaoSemRecontarOsTopicos() throws Exception {
+        transactionTemplate.execute(status -> {
+            entityManager.persist(curso("Spring Boot"));
+            entityManager.persist(curso("Java"));
+            return null;
+        });
+
+        cadastrar("{\"titulo\":\"Duvida 1\",\"mensagem\":\"Mensagem 1\",\"nomeCurso\":\"Spring Boot\"}");
+        cadastrar("{\"titulo\":\"Duvida 2\",\"mensagem\":\"Mensagem 2\",\"nomeCurso\":\"Spring Boot\"}");
+        mvc.perform(post("/topicos/lote").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"topicos\":[{\"titulo\":\"Lote 1\",\"mensagem\":\"Mensagem 1\",\"nomeCurso\":\"Java\"},"
+                        + "{\"titulo\":\"Lote 2\",\"mensagem\":\"Mensagem 2\",\"nomeCurso\":\"Java\"},"
+                        + "{\"titulo\":\"Lote 3\",\"mensagem\":\"Mensagem 3\",\"nomeCurso\":\"Java\"}]}"))
+                .andExpect(status().isCreated());
+        mvc.perform(patch("/topicos/status").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"novoStatus\":\"FECHADO\",\"nomeCurso\":\"Java\"}"))
+                .andExpect(status().isOk());
+
+        // uma remoção pelo Hibernate e outra pelo delete condicional
+        Long primeiro = jdbcTemplate.queryForObject("select min(id) from topico", Long.class);
+        mvc.perform(delete("/topicos/{id}", primeiro)).andExpect(status().isOk());
+        Long segundo = jdbcTemplate.queryForObject("select max(id) from topico", Long.class);
+        Long versao = jdbcTemplate.queryForObject("select versao from topico where id = ?", Long.class, segundo);
+        mvc.perform(delete("/topicos/{id}", segundo).header(HttpHeaders.IF_MATCH, "\"topico-" + versao + "\""))
+                .andExpect(status().isOk());
+
+        String incremental = mvc.perform(get("/estatisticas"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(3))
+                .andExpect(jsonPath("$.porCurso[0].curso").value("Java"))
+                .andExpect(jsonPath("$.porCurso[0].quantidade").value(2))
+                .andExpect(jsonPath("$.porCurso[1].curso").value("Spring Boot"))
+                .andExpect(jsonPath("$.porCurso[1].quantidade").value(1))
+                .andExpect(jsonPath("$.porStatus[0].status").value("FECHADO"))
+                .andExpect(jsonPath("$.porStatus[0].quantidade").value(2))
+                .andExpect(jsonPath("$.porStatus[1].status").value("NAO_RESPONDIDO"))
+                .andExpect(jsonPath("$.porStatus[1].quantidade").value(1))
+                .andExpect(jsonPath("$.porDia.length()").value(1))
+                .andReturn().getResponse().getContentAsString();
+
+        // o que foi mantido a cada escrita tem que bater com a contagem a partir dos tópicos
+        String reconstruido = mvc.perform(post("/estatisticas/reconstrucao"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(reconstruido, incremental);
+    }
+
+    private void cadastrar(String topico) throws Exception {
+        mvc.perform(post("/topicos").contentType(MediaType.APPLICATION_JSON).content(topico))
+                .andExpect(status().isCreated());
+    }
+
+    private static Curso curso(String nome) {
+        Curso curso = new Curso();
+        curso.setNome(nome);
+        curso.setCategoria("Programacao");
+        return curso;
+    }
+}
@@ -0,0 +1,90 @@
+package br.com.alura.forum.controller;
+
+import br.com.alura.forum.controller.dto.TopicoDTO;
+import br.com.alura.forum.modelo.Curso;
+import br.com.alura.forum.modelo.Topico;
+import br.com.alura.forum.repository.TopicoRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+    Formato do GET /topicos/export: um TopicoDTO em JSON por linha, na ordem do id, cada linha terminando em \n e
+    sem colchetes nem virgulas entre as linhas. O fixture passa de TAMANHO_LOTE_EXPORTACAO tópicos para a exportação
+    atravessar um flush do gerador no meio.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+public class ExportacaoDeTopicosTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TopicoRepository topicoRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    public void exportacaoDeveEscreverUmTopicoPorLinhaNaOrdemDoId() throws Exception {
+        Curso curso = new Curso();
+        curso.setNome("Exportacao");
+        curso.setCategoria("Programacao");
+        entityManager.persist(curso);
+        List<Long> ids = new ArrayList<>();
+        int quantidade = TopicoRepository.TAMANHO_LOTE_EXPORTACAO + 7;
+        for (int i = 0; i < quantidade; i++) {
+            Topico topico = new Topico("Topico " + i, "Mensagem com \"aspas\"\ne quebra de linha " + i, curso);
+            topico.setDataCriacao(LocalDateTime.of(2019, 5, 1, 10, 0).plusSeconds(i));
+            entityManager.persist(topico);
+            ids.add(topico.getId());
+        }
+        entityManager.flush();
+        Collections.sort(ids);
+
+        MockHttpServletResponse resposta = mvc.perform(get("/topicos/export"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse();
+
+        assertTrue(resposta.getContentType(), resposta.getContentType().startsWith("application/x-ndjson"));
+        String corpo = new String(resposta.getContentAsByteArray(), StandardCharsets.UTF_8);
+        assertTrue(corpo.endsWith("\n"));
+        String[] linhas = corpo.split("\n");
+        assertEquals(quantidade, linhas.length);
+
+        for (int i = 0; i < linhas.length; i++) {
+            JsonNode linha = objectMapper.readTree(linhas[i]);
+            assertTrue(linhas[i], linha.isObject());
+            assertEquals(ids.get(i).longValue(), linha.get("id").asLong());
+        }
+        // cada linha e exatamente o JSON do TopicoDTO que a API devolve em qualquer outro endpoint
+        TopicoDTO primeiro = topicoRepository.findResumosPorIds(Collections.singletonList(ids.get(0))).get(0);
+        assertEquals(objectMapper.writeValueAsString(primeiro), linhas[0]);
+    }
+}
@@ -0,0 +1,162 @@
+package br.com.alura.forum.controller;
+
+import br.com.alura.forum.modelo.Curso;
+import br.com.alura.forum.modelo.Topico;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+    Percorre a listagem pelo cursor do cabeçalho Link até a ultima página e compara cada página com a mesma consulta
+    feita com OFFSET, que e o resultado que o cursor precisa reproduzir sem pular nem repetir tópicos.
+
+    Os tópicos do fixture tem datas repetidas, para o desempate pelo id tambem passar por uma fronteira de página.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+public class ListagemDeTopicosTest {
+
+    private static final Pattern PROXIMA = Pattern.compile("<(.+)>; rel=\"next\"");
+    // o mesmo tamanho das URLs dos testes
+    private static final int TAMANHO = 3;
+    private static final LocalDateTime INICIO = LocalDateTime.of(2019, 5, 1, 10, 0);
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Before
+    public void before() {
+        Curso paginado = curso("Paginacao");
+        Curso outro = curso("Outro curso");
+        // minutos de criação e de ultima atividade de cada tópico do curso paginado
+        int[][] momentos = {{0, 50}, {1, 1}, {1, 40}, {1, 1}, {2, 40}, {3, 3}, {3, 10}};
+        for (int i = 0; i < momentos.length; i++) {
+            topico("Topico " + i, paginado, momentos[i][0], momentos[i][1]);
+            topico("Outro " + i, outro, momentos[i][0], momentos[i][0]);
+        }
+    }
+
+    @Test
+    public void cursorDaListagemDevePercorrerOsTopicosNaOrdemDoOffset() throws Exception {
+        assertPaginasIguais("/topicos?tamanho=3",
+                "select t.id from Topico t order by t.dataCriacao desc, t.id desc", null);
+    }
+
+    @Test
+    public void cursorDaListagemDoCursoDevePercorrerOsTopicosNaOrdemDoOffset() throws Exception {
+        assertPaginasIguais("/topicos?tamanho=3&nomeCurso=Paginacao",
+                "select t.id from Topico t where t.curso.nome = :curso order by t.dataCriacao desc, t.id desc",
+                "Paginacao");
+    }
+
+    @Test
+    public void cursorDaListagemPorAtividadeDevePercorrerOsTopicosNaOrdemDoOffset() throws Exception {
+        assertPaginasIguais("/topicos?tamanho=3&ordem=atividade",
+                "select t.id from Topico t order by t.ultimaAtividade desc, t.id desc", null);
+        assertPaginasIguais("/topicos?tamanho=3&nomeCurso=Paginacao&ordem=atividade",
+                "select t.id from Topico t where t.curso.nome = :curso order by t.ultimaAtividade desc, t.id desc",
+                "Paginacao");
+    }
+
+    @Test
+    public void cursorOuOrdemInvalidosDevemResponder400() throws Exception {
+        mvc.perform(get("/topicos").param("cursor", "nao-e-um-cursor")).andExpect(status().isBadRequest());
+        mvc.perform(get("/topicos").param("ordem", "titulo")).andExpect(status().isBadRequest());
+    }
+
+    /*
+        Os parâmetros vão na própria URL porque o Link da próxima página e montado a partir da query string da
+        requisição atual, e o MockMvc não coloca nela os parâmetros passados pelo param().
+     */
+    private void assertPaginasIguais(String primeira, String consulta, String curso) throws Exception {
+        entityManager.flush();
+        MockHttpServletRequestBuilder requisicao = get(URI.create(primeira));
+        int pagina = 0;
+        while (true) {
+            MockHttpServletResponse resposta = mvc.perform(requisicao)
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse();
+            List<Long> esperados = offset(consulta, curso, pagina);
+            assertEquals("pagina " + pagina, esperados, ids(resposta.getContentAsString()));
+
+            String link = resposta.getHeader(HttpHeaders.LINK);
+            if (esperados.size() < TAMANHO || offset(consulta, curso, pagina + 1).isEmpty()) {
+                // a ultima página (mesmo cheia) não tem próxima
+                assertNull("pagina " + pagina, link);
+                return;
+            }
+            Matcher proxima = PROXIMA.matcher(link);
+            assertTrue(link, proxima.matches());
+            requisicao = get(URI.create(proxima.group(1)));
+            pagina++;
+        }
+    }
+
+    private List<Long> offset(String consulta, String curso, int pagina) {
+        TypedQuery<Long> query = entityManager.createQuery(consulta, Long.class)
+                .setFirstResult(pagina * TAMANHO)
+                .setMaxResults(TAMANHO);
+        if (curso != null) {
+            query.setParameter("curso", curso);
+        }
+        return query.getResultList();
+    }
+
+    private static List<Long> ids(String json) {
+        List<Long> ids = new ArrayList<>();
+        for (Number id : JsonPath.<List<Number>>read(json, "$[*].id")) {
+            ids.add(id.longValue());
+        }
+        return ids;
+    }
+
+    private Curso curso(String nome) {
+        Curso curso = new Curso();
+        curso.setNome(nome);
+        curso.setCategoria("Programacao");
+        entityManager.persist(curso);
+        return curso;
+    }
+
+    private void topico(String titulo, Curso curso, int criacao, int atividade) {
+        Topico topico = new Topico(titulo, "Mensagem de " + titulo, curso);
+        topico.setDataCriacao(INICIO.plusMinutes(criacao));
+        entityManager.persist(topico);
+        entityManager.flush();
+        // a ultima atividade so muda pelas respostas, então o fixture grava direto
+        entityManager.createQuery("update Topico t set t.ultimaAtividade = :atividade where t.id = :id")
+                .setParameter("atividade", INICIO.plusMinutes(atividade))
+                .setParameter("id", topico.getId())
+                .executeUpdate();
+    }
+}
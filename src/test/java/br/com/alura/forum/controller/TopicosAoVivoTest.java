@@ -0,0 +1,111 @@
+package br.com.alura.forum.controller;
+
+import br.com.alura.forum.modelo.Curso;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+    Assina o GET /topicos/stream e cadastra depois, pelo POST /topicos e pelo POST /topicos/lote. Sem @Transactional,
+    como no EstatisticasControllerTest: os eventos so saem no commit.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class TopicosAoVivoTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @After
+    public void after() {
+        jdbcTemplate.update("delete from topico");
+        jdbcTemplate.update("delete from curso");
+        jdbcTemplate.update("delete from estatistica_topicos");
+        entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getCache().evictAllRegions();
+    }
+
+    @Test
+    public void assinanteDeveReceberOsTopicosCadastradosDepoisDaAssinatura() throws Exception {
+        transactionTemplate.execute(status -> {
+            curso("Ao vivo");
+            curso("Outro curso");
+            return null;
+        });
+        MockHttpServletResponse doCurso = assinar("Ao vivo");
+        MockHttpServletResponse deOutroCurso = assinar("Outro curso");
+
+        mvc.perform(post("/topicos").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"titulo\":\"Cadastro unitario\",\"mensagem\":\"Mensagem\",\"nomeCurso\":\"Ao vivo\"}"))
+                .andExpect(status().isCreated());
+        mvc.perform(post("/topicos/lote").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"topicos\":["
+                        + "{\"titulo\":\"Primeiro do lote\",\"mensagem\":\"Mensagem\",\"nomeCurso\":\"Ao vivo\"},"
+                        + "{\"titulo\":\"Segundo do lote\",\"mensagem\":\"Mensagem\",\"nomeCurso\":\"Ao vivo\"}]}"))
+                .andExpect(status().isCreated());
+
+        String eventos = esperarEventos(doCurso, 3);
+        assertTrue(eventos, eventos.contains("Cadastro unitario"));
+        assertTrue(eventos, eventos.contains("Primeiro do lote"));
+        assertTrue(eventos, eventos.contains("Segundo do lote"));
+        assertFalse(deOutroCurso.getContentAsString(), deOutroCurso.getContentAsString().contains("event:topico"));
+    }
+
+    private MockHttpServletResponse assinar(String nomeCurso) throws Exception {
+        return mvc.perform(get("/topicos/stream").param("nomeCurso", nomeCurso))
+                .andExpect(request().asyncStarted())
+                .andReturn().getResponse();
+    }
+
+    // os eventos são escritos pelas threads do TopicosAoVivo, depois do commit
+    private static String esperarEventos(MockHttpServletResponse resposta, int quantidade) throws Exception {
+        long limite = System.currentTimeMillis() + 5000;
+        String eventos = resposta.getContentAsString();
+        while (contar(eventos) < quantidade && System.currentTimeMillis() < limite) {
+            Thread.sleep(20);
+            eventos = resposta.getContentAsString();
+        }
+        assertEquals(eventos, quantidade, contar(eventos));
+        return eventos;
+    }
+
+    private static int contar(String eventos) {
+        return eventos.split("event:topico", -1).length - 1;
+    }
+
+    private void curso(String nome) {
+        Curso curso = new Curso();
+        curso.setNome(nome);
+        curso.setCategoria("Programacao");
+        entityManager.persist(curso);
+    }
+}
@@ -0,0 +1,152 @@
+package br.com.alura.forum.controller;
+
+import br.com.alura.forum.modelo.Curso;
+import br.com.alura.forum.modelo.Resposta;
+import br.com.alura.forum.modelo.Topico;
+import br.com.alura.forum.modelo.Usuario;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@Transactional
+public class TopicosControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @Before
+    public void before() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    public void detalharDeveCarregarTopicoRespostasEAutoresEmUmaUnicaConsulta() throws Exception {
+        Curso curso = new Curso();
+        curso.setNome("Spring Boot");
+        curso.setCategoria("Programacao");
+        entityManager.persist(curso);
+
+        Usuario autorDoTopico = usuario("Aluno");
+        Topico topico = new Topico("Duvida com N+1", "Como evitar?", curso);
+        topico.setAutor(autorDoTopico);
+        entityManager.persist(topico);
+
+        // cada resposta com um autor diferente, que e o caso que gerava uma consulta por autor
+        for (int i = 0; i < 5; i++) {
+            Resposta resposta = new Resposta();
+            resposta.setMensagem("Resposta " + i);
+            resposta.setTopico(topico);
+            resposta.setAutor(usuario("Instrutor " + i));
+            entityManager.persist(resposta);
+        }
+
+        // limpa o contexto de persistência para que o controller tenha que ir ao banco
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        mvc.perform(get("/topicos/{id}", topico.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nomeAutor").value("Aluno"))
+                .andExpect(jsonPath("$.respostas.length()").value(5))
+                .andExpect(jsonPath("$.respostas[4].nomeAutor").value("Instrutor 4"));
+
+        // um select da versão (para o ETag) e um unico select para o tópico com tudo
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void detalharComEtagAtualDeveResponder304SemCarregarOTopico() throws Exception {
+        Curso curso = new Curso();
+        curso.setNome("Spring Data");
+        curso.setCategoria("Programacao");
+        entityManager.persist(curso);
+
+        Topico topico = new Topico("Duvida com cache", "Como usar ETag?", curso);
+        topico.setAutor(usuario("Aluno"));
+        entityManager.persist(topico);
+        entityManager.flush();
+        entityManager.clear();
+
+        String etag = mvc.perform(get("/topicos/{id}", topico.getId()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        statistics.clear();
+
+        mvc.perform(get("/topicos/{id}", topico.getId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        // so o select da versão
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void detalharEmJsonEEmCborDeveResponderComUmUnicoEtag() throws Exception {
+        Curso curso = new Curso();
+        curso.setNome("Spring Data");
+        curso.setCategoria("Programacao");
+        entityManager.persist(curso);
+
+        Topico topico = new Topico("Duvida com formatos", "JSON ou CBOR?", curso);
+        topico.setAutor(usuario("Aluno"));
+        entityManager.persist(topico);
+        entityManager.flush();
+        entityManager.clear();
+
+        // o JSON sai dos bytes da carga, o CBOR do conversor: os dois com o ETag da versão que a carga leu
+        MockHttpServletResponse json = mvc.perform(get("/topicos/{id}", topico.getId()))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.titulo").value("Duvida com formatos"))
+                .andReturn().getResponse();
+        MockHttpServletResponse cbor = mvc.perform(get("/topicos/{id}", topico.getId())
+                .accept(MediaType.valueOf("application/cbor")))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/cbor"))
+                .andReturn().getResponse();
+
+        assertEquals(1, json.getHeaders(HttpHeaders.ETAG).size());
+        assertEquals(json.getHeaders(HttpHeaders.ETAG), cbor.getHeaders(HttpHeaders.ETAG));
+    }
+
+    private Usuario usuario(String nome) {
+        Usuario usuario = new Usuario();
+        usuario.setNome(nome);
+        usuario.setEmail(nome.replace(' ', '.').toLowerCase() + "@email.com");
+        usuario.setSenha("123456");
+        entityManager.persist(usuario);
+        return usuario;
+    }
+}
@@ -0,0 +1,206 @@
+package br.com.alura.forum.controller;
+
+import br.com.alura.forum.modelo.Curso;
+import br.com.alura.forum.modelo.Resposta;
+import br.com.alura.forum.modelo.Topico;
+import br.com.alura.forum.modelo.Usuario;
+import br.com.alura.forum.service.emalta.TopicosEmAlta;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+    Sem @Transactional, como no EstatisticasControllerTest: o ranking so recebe os cadastros e respostas no commit.
+
+    Um restart e simulado com outra instancia do TopicosEmAlta criada pelo contexto, que so tem o que leu da tabela.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class TopicosEmAltaTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TopicosEmAlta topicosEmAlta;
+
+    @Autowired
+    private AutowireCapableBeanFactory beanFactory;
+
+    @After
+    public void after() {
+        limparRanking();
+        jdbcTemplate.update("delete from resposta");
+        jdbcTemplate.update("delete from topico");
+        jdbcTemplate.update("delete from curso");
+        jdbcTemplate.update("delete from usuario");
+        jdbcTemplate.update("delete from estatistica_topicos");
+        entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getCache().evictAllRegions();
+    }
+
+    @Test
+    public void rankingDeveSeguirRespostasEVisualizacoesESobreviverAoCheckpoint() throws Exception {
+        // sem os tópicos que os outros testes deixaram no ranking
+        limparRanking();
+        Long[] ids = transactionTemplate.execute(status -> {
+            Curso spring = curso("Spring Boot");
+            Curso java = curso("Java");
+            Topico poucoVisto = topico("Pouco visto", spring);
+            Topico respondido = topico("Respondido", spring);
+            Topico deOutroCurso = topico("De outro curso", java);
+            Resposta resposta = new Resposta();
+            resposta.setMensagem("Resposta");
+            resposta.setTopico(respondido);
+            resposta.setAutor(respondido.getAutor());
+            entityManager.persist(resposta);
+            return new Long[]{poucoVisto.getId(), respondido.getId(), deOutroCurso.getId()};
+        });
+        Long poucoVisto = ids[0];
+        Long respondido = ids[1];
+        Long deOutroCurso = ids[2];
+
+        // cadastro e resposta valem 5, cada visualização 1: respondido = 10, deOutroCurso = 8, poucoVisto = 6
+        visualizar(deOutroCurso, 3);
+        visualizar(poucoVisto, 1);
+
+        mvc.perform(get("/topicos/em-alta"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].id").value(respondido))
+                .andExpect(jsonPath("$[1].id").value(deOutroCurso))
+                .andExpect(jsonPath("$[2].id").value(poucoVisto));
+        mvc.perform(get("/topicos/em-alta").param("nomeCurso", "Spring Boot").param("tamanho", "1"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(respondido));
+
+        // depois de um restart o ranking volta do checkpoint
+        topicosEmAlta.manter();
+        TopicosEmAlta reiniciado = beanFactory.createBean(TopicosEmAlta.class);
+        reiniciado.carregar();
+        assertEquals(Arrays.asList(respondido, deOutroCurso, poucoVisto), reiniciado.maisPontuados(null, 10));
+        assertEquals(Collections.singletonList(deOutroCurso), reiniciado.maisPontuados("Java", 10));
+
+        // as 5 visualizações que chegam antes da leitura da subida são somadas ao checkpoint: o poucoVisto chega a 11
+        TopicosEmAlta subindo = beanFactory.createBean(TopicosEmAlta.class);
+        for (int i = 0; i < 5; i++) {
+            subindo.visualizado(poucoVisto);
+        }
+        subindo.carregar();
+        // uma segunda leitura não soma o checkpoint de novo
+        subindo.carregar();
+        assertEquals(Arrays.asList(poucoVisto, respondido, deOutroCurso), subindo.maisPontuados(null, 10));
+        assertEquals(Arrays.asList(poucoVisto, respondido), subindo.maisPontuados("Spring Boot", 10));
+
+        mvc.perform(delete("/topicos/{id}", poucoVisto)).andExpect(status().isOk());
+        mvc.perform(get("/topicos/em-alta").param("nomeCurso", "Spring Boot"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(respondido));
+        topicosEmAlta.manter();
+        assertEquals(Integer.valueOf(2), jdbcTemplate.queryForObject("select count(*) from topico_em_alta",
+                Integer.class));
+    }
+
+    /*
+        Um tópico que o ranking não conhecia entra pela visualização so no ranking geral; o curso dele aparece
+        depois da manutenção.
+     */
+    @Test
+    public void visualizacaoDeTopicoDesconhecidoDeveEntrarNoCursoDepoisDaManutencao() throws Exception {
+        Long id = transactionTemplate.execute(status -> topico("Antigo", curso("Spring Boot")).getId());
+        // so a visualização, sem o cadastro
+        topicosEmAlta.remover(id);
+
+        visualizar(id, 1);
+        mvc.perform(get("/topicos/em-alta").param("nomeCurso", "Spring Boot"))
+                .andExpect(jsonPath("$.length()").value(0));
+        mvc.perform(get("/topicos/em-alta"))
+                .andExpect(jsonPath("$[0].id").value(id));
+
+        topicosEmAlta.manter();
+        mvc.perform(get("/topicos/em-alta").param("nomeCurso", "Spring Boot"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(id));
+    }
+
+    @Test
+    public void rankingDoCursoDeveSairQuandoOUltimoTopicoSai() {
+        TopicosEmAlta ranking = beanFactory.createBean(TopicosEmAlta.class);
+        ranking.cadastrado(1L, "Curso passageiro");
+        ranking.cadastrado(2L, "Curso passageiro");
+        ranking.remover(1L);
+        assertEquals(Collections.singleton("Curso passageiro"), cursos(ranking));
+
+        ranking.remover(2L);
+        assertEquals(Collections.emptySet(), cursos(ranking));
+        assertEquals(Collections.emptyList(), ranking.maisPontuados("Curso passageiro", 10));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<String> cursos(TopicosEmAlta ranking) {
+        return ((Map<String, ?>) ReflectionTestUtils.getField(ranking, "porCurso")).keySet();
+    }
+
+    private void limparRanking() {
+        for (Long id : topicosEmAlta.maisPontuados(null, Integer.MAX_VALUE)) {
+            topicosEmAlta.remover(id);
+        }
+        topicosEmAlta.salvar();
+    }
+
+    private void visualizar(Long id, int vezes) throws Exception {
+        for (int i = 0; i < vezes; i++) {
+            mvc.perform(get("/topicos/{id}", id)).andExpect(status().isOk());
+        }
+    }
+
+    private Curso curso(String nome) {
+        Curso curso = new Curso();
+        curso.setNome(nome);
+        curso.setCategoria("Programacao");
+        entityManager.persist(curso);
+        return curso;
+    }
+
+    private Topico topico(String titulo, Curso curso) {
+        Usuario autor = new Usuario();
+        autor.setNome("Aluno");
+        autor.setEmail(titulo.replace(' ', '.') + "@email.com");
+        entityManager.persist(autor);
+        Topico topico = new Topico(titulo, "Mensagem de " + titulo, curso);
+        topico.setAutor(autor);
+        entityManager.persist(topico);
+        return topico;
+    }
+}
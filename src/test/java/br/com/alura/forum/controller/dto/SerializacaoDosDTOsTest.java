@@ -0,0 +1,83 @@
+package br.com.alura.forum.controller.dto;
+
+import br.com.alura.forum.modelo.Curso;
+import br.com.alura.forum.modelo.Resposta;
+import br.com.alura.forum.modelo.Topico;
+import br.com.alura.forum.modelo.Usuario;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.junit.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/*
+    Os serializers escritos a mão tem que gerar exatamente os mesmos bytes da serialização por reflexão do Jackson,
+    que e o que a API devolvia antes deles. A referência e o mesmo mapper com as anotações desligadas, o que ignora o
+    @JsonSerialize dos DTOs.
+ */
+public class SerializacaoDosDTOsTest {
+
+    private final ObjectMapper json = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    private final ObjectMapper jsonPorReflexao = json.copy().configure(MapperFeature.USE_ANNOTATIONS, false);
+
+    @Test
+    public void topicoDeveSairIgualASerializacaoPorReflexao() throws Exception {
+        List<TopicoDTO> topicos = new ArrayList<>();
+        topicos.add(topico(1L, LocalDateTime.of(2019, 5, 1, 10, 0)));
+        topicos.add(topico(2L, LocalDateTime.of(2019, 5, 1, 10, 0, 7, 100_000_000)));
+        topicos.add(topico(3L, LocalDateTime.of(2019, 12, 31, 23, 59, 59, 999_999_999)));
+        topicos.add(topico(4L, LocalDateTime.of(845, 1, 2, 3, 4, 5, 1_000)));
+        topicos.add(topico(5L, LocalDateTime.of(12019, 1, 1, 0, 0)));
+        topicos.add(new TopicoDTO(6L, null, "Mensagem com \"aspas\" e acentuação", null, 0, null));
+
+        assertEquals(jsonPorReflexao.writeValueAsString(topicos), json.writeValueAsString(topicos));
+    }
+
+    @Test
+    public void detalhesDevemSairIgualASerializacaoPorReflexao() throws Exception {
+        Topico topico = new Topico("Duvida", "Mensagem", new Curso());
+        topico.setId(1L);
+        topico.setAutor(usuario("Aluno"));
+        topico.setDataCriacao(LocalDateTime.of(2019, 5, 1, 10, 0, 30, 120_000));
+        for (long i = 1; i <= 3; i++) {
+            Resposta resposta = new Resposta();
+            resposta.setId(i == 3 ? null : i);
+            resposta.setMensagem("Resposta " + i);
+            resposta.setAutor(usuario("Instrutor " + i));
+            resposta.setDataCriacao(LocalDateTime.of(2019, 5, 2, 8, 0).plusSeconds(i));
+            topico.adicionarResposta(resposta);
+        }
+        DetalhesDoTopicoDTO detalhes = new DetalhesDoTopicoDTO(topico);
+
+        assertEquals(jsonPorReflexao.writeValueAsString(detalhes), json.writeValueAsString(detalhes));
+    }
+
+    @Test
+    public void formatosBinariosDevemManterAsDatasComoTimestamp() throws Exception {
+        ObjectMapper cbor = Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build();
+        TopicoDTO topico = topico(1L, LocalDateTime.of(2019, 5, 1, 10, 0, 7, 100_000_000));
+
+        assertArrayEquals(cbor.copy().configure(MapperFeature.USE_ANNOTATIONS, false).writeValueAsBytes(topico),
+                cbor.writeValueAsBytes(topico));
+    }
+
+    private static TopicoDTO topico(long id, LocalDateTime data) {
+        return new TopicoDTO(id, "Titulo " + id, "Mensagem " + id, data, (int) id, data.plusMinutes(id - 1));
+    }
+
+    private static Usuario usuario(String nome) {
+        Usuario usuario = new Usuario();
+        usuario.setNome(nome);
+        return usuario;
+    }
+}
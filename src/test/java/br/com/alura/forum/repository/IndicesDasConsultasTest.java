@@ -0,0 +1,97 @@
+package br.com.alura.forum.repository;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.sql.Timestamp;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/*
+    Confere no EXPLAIN do H2 que as consultas principais dos repositórios usam os indices das migrações
+    (db/migration) em vez de ler a tabela inteira. As consultas são o SQL que o Hibernate gera para cada uma, so com
+    menos colunas no select; quem mudar uma consulta ou um indice deve mudar aqui tambem.
+
+    O H2 escreve no plano o indice escolhido para cada tabela (PUBLIC.IDX_...), "tableScan" quando não ha indice que
+    sirva e "index sorted" quando o ORDER BY sai do proprio indice, sem ordenar as linhas depois.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class IndicesDasConsultasTest {
+
+    private static final Timestamp DATA = Timestamp.valueOf("2019-05-01 10:00:00");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // CursoRepository.findByNome
+    @Test
+    public void buscaDoCursoPeloNomeUsaIndiceDoNome() {
+        String plano = plano("select c.id from curso c where c.nome = ?", "Spring Boot");
+
+        assertUsaIndice(plano, "IDX_CURSO_NOME");
+    }
+
+    // TopicoRepository.primeiraPagina e paginaApos
+    @Test
+    public void listagemLeAPaginaNaOrdemDoIndiceDeDataDeCriacao() {
+        String primeira = plano("select t.id from topico t order by t.data_criacao desc, t.id desc limit ?", 20);
+        String seguinte = plano("select t.id from topico t where t.data_criacao < ? "
+                + "or (t.data_criacao = ? and t.id < ?) order by t.data_criacao desc, t.id desc limit ?",
+                DATA, DATA, 100L, 20);
+
+        assertUsaIndiceOrdenado(primeira, "IDX_TOPICO_DATA_CRIACAO_ID");
+        assertUsaIndiceOrdenado(seguinte, "IDX_TOPICO_DATA_CRIACAO_ID");
+    }
+
+    // TopicoRepository.primeiraPaginaPorAtividade e paginaAposPorAtividade
+    @Test
+    public void listagemPorAtividadeLeAPaginaNaOrdemDoIndiceDeAtividade() {
+        String primeira = plano("select t.id from topico t order by t.ultima_atividade desc, t.id desc limit ?", 20);
+        String seguinte = plano("select t.id from topico t where t.ultima_atividade < ? "
+                + "or (t.ultima_atividade = ? and t.id < ?) order by t.ultima_atividade desc, t.id desc limit ?",
+                DATA, DATA, 100L, 20);
+
+        assertUsaIndiceOrdenado(primeira, "IDX_TOPICO_ULTIMA_ATIVIDADE_ID");
+        assertUsaIndiceOrdenado(seguinte, "IDX_TOPICO_ULTIMA_ATIVIDADE_ID");
+    }
+
+    // TopicoRepository.primeiraPaginaPorCursoNome e paginaAposPorCursoNome
+    @Test
+    public void listagemDoCursoChegaAosTopicosPeloIndiceDoCurso() {
+        String plano = plano("select t.id from topico t cross join curso c where t.curso_id = c.id and c.nome = ? "
+                + "and (t.data_criacao < ? or (t.data_criacao = ? and t.id < ?)) "
+                + "order by t.data_criacao desc, t.id desc limit ?", "Spring Boot", DATA, DATA, 100L, 20);
+
+        assertUsaIndice(plano, "IDX_CURSO_NOME");
+        assertUsaIndice(plano, "IDX_TOPICO_CURSO_DATA_CRIACAO_ID");
+    }
+
+    // TopicoRepository.findDetalhadoById: o tópico pela chave e as respostas pelo indice do tópico
+    @Test
+    public void detalheDoTopicoBuscaAsRespostasPeloIndiceDoTopico() {
+        String plano = plano("select t.id, r.id from topico t left outer join resposta r on t.id = r.topico_id "
+                + "where t.id = ?", 1L);
+
+        assertUsaIndice(plano, "IDX_RESPOSTA_TOPICO_ID");
+    }
+
+    private String plano(String sql, Object... parametros) {
+        return jdbcTemplate.queryForObject("explain " + sql, String.class, parametros);
+    }
+
+    private static void assertUsaIndice(String plano, String indice) {
+        assertTrue("Plano sem o indice " + indice + ":\n" + plano, plano.contains("PUBLIC." + indice));
+        assertFalse("Plano com leitura da tabela inteira:\n" + plano, plano.contains("tableScan"));
+    }
+
+    private static void assertUsaIndiceOrdenado(String plano, String indice) {
+        assertUsaIndice(plano, indice);
+        assertTrue("Plano ordena as linhas em vez de seguir o indice:\n" + plano, plano.contains("index sorted"));
+    }
+}
@@ -0,0 +1,115 @@
+package br.com.alura.forum.service;
+
+import br.com.alura.forum.modelo.Curso;
+import br.com.alura.forum.modelo.Topico;
+import br.com.alura.forum.modelo.Usuario;
+import br.com.alura.forum.repository.TopicoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/*
+    Uma carga que falha com um Error tem que soltar quem estava esperando por ela, e não deixar a chave presa no mapa.
+    E uma carga que le uma versão diferente da chave entrega a versão lida, e fica no micro-cache com a chave dela.
+ */
+public class DetalhesDoTopicoServiceTest {
+
+    private final TopicoRepository topicoRepository = mock(TopicoRepository.class);
+    private final DetalhesDoTopicoService service = new DetalhesDoTopicoService(new SimpleMeterRegistry());
+
+    @Before
+    public void before() {
+        ReflectionTestUtils.setField(service, "topicoRepository", topicoRepository);
+        ReflectionTestUtils.setField(service, "microCache", 0L);
+        ReflectionTestUtils.setField(service, "objectMapper", Jackson2ObjectMapperBuilder.json().build());
+    }
+
+    @Test
+    public void cargaDeOutraVersaoDeveFicarNaChaveDaVersaoLida() {
+        ReflectionTestUtils.setField(service, "microCache", 60_000L);
+        // o tópico mudou entre a leitura da versão (1) e a consulta, que trouxe a versão 2
+        when(topicoRepository.findDetalhadoById(1L)).thenReturn(Optional.of(topico(2L)));
+
+        DetalhesDoTopico carregados = service.carregar(1L, 1L).get();
+        assertEquals(Long.valueOf(2), carregados.getVersao());
+        assertTrue(new String(carregados.getJson(), StandardCharsets.UTF_8).contains("\"titulo\":\"Versao nova\""));
+
+        // quem leu a versão 2 usa a mesma carga, com o mesmo corpo, sem consultar de novo
+        assertSame(carregados, service.carregar(1L, 2L).get());
+        verify(topicoRepository, times(1)).findDetalhadoById(1L);
+    }
+
+    @Test
+    public void errorNaCargaDeveChegarTambemAQuemEstaEsperando() throws Exception {
+        CountDownLatch consultando = new CountDownLatch(1);
+        CountDownLatch falhar = new CountDownLatch(1);
+        when(topicoRepository.findDetalhadoById(anyLong())).thenAnswer(invocacao -> {
+            consultando.countDown();
+            falhar.await();
+            throw new OutOfMemoryError("montando o DTO");
+        }).thenReturn(Optional.empty());
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> primeira = executor.submit(() -> service.carregar(1L, 0L));
+            assertTrue(consultando.await(5, TimeUnit.SECONDS));
+            Future<?> segunda = executor.submit(() -> service.carregar(1L, 0L));
+            // a segunda fica esperando a carga da primeira, sem consultar
+            Thread.sleep(100);
+            assertFalse(segunda.isDone());
+
+            falhar.countDown();
+            assertFalhouComError(primeira);
+            assertFalhouComError(segunda);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // a carga que falhou saiu do mapa: a proxima requisição consulta de novo
+        assertEquals(Optional.empty(), service.carregar(1L, 0L));
+    }
+
+    private static Topico topico(Long versao) {
+        Usuario autor = new Usuario();
+        autor.setNome("Aluno");
+        Topico topico = new Topico("Versao nova", "Mensagem", new Curso());
+        topico.setId(1L);
+        topico.setAutor(autor);
+        ReflectionTestUtils.setField(topico, "versao", versao);
+        return topico;
+    }
+
+    private static void assertFalhouComError(Future<?> requisicao) throws InterruptedException {
+        try {
+            requisicao.get(5, TimeUnit.SECONDS);
+            fail("a carga deveria ter falhado");
+        } catch (ExecutionException e) {
+            assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof OutOfMemoryError);
+        } catch (TimeoutException e) {
+            fail("a requisição ficou presa esperando a carga");
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package br.com.alura.forum.service;
+
+import br.com.alura.forum.modelo.Curso;
+import br.com.alura.forum.modelo.Resposta;
+import br.com.alura.forum.modelo.Topico;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/*
+    Contadores de respostas do tópico: o update atomico do commit (ContadoresDeRespostas) e o reparo que recalcula os
+    valores a partir das respostas. Sem @Transactional, porque os dois so acontecem em transações de verdade.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class ReparoDeContadoresServiceTest {
+
+    private static final LocalDateTime INICIO = LocalDateTime.of(2019, 5, 1, 10, 0);
+
+    @Autowired
+    private ReparoDeContadoresService reparoDeContadoresService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @After
+    public void after() {
+        jdbcTemplate.update("delete from resposta");
+        jdbcTemplate.update("delete from topico");
+        jdbcTemplate.update("delete from curso");
+        jdbcTemplate.update("delete from estatistica_topicos");
+        entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getCache().evictAllRegions();
+    }
+
+    @Test
+    public void respostasGravadasSemOTopicoDevemSomarNosContadores() throws Exception {
+        Long id = transactionTemplate.execute(status -> {
+            Topico topico = topico(curso("Contadores"));
+            // sem o adicionarResposta: a resposta so aponta para o tópico
+            resposta(topico, INICIO.plusMinutes(5));
+            resposta(topico, INICIO.plusMinutes(2));
+            return topico.getId();
+        });
+        assertContadores(id, 2, INICIO.plusMinutes(5));
+        long versao = versao(id);
+
+        // respostas simultaneas no mesmo tópico esperam o lock da linha, sem conflito de versão nem contagem perdida
+        int simultaneas = 8;
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(simultaneas);
+        try {
+            List<Future<Object>> respostas = new ArrayList<>();
+            for (int i = 0; i < simultaneas; i++) {
+                LocalDateTime data = INICIO.plusMinutes(10 + i);
+                respostas.add(executor.submit((Callable<Object>) () -> {
+                    largada.await();
+                    return transactionTemplate.execute(status ->
+                            resposta(entityManager.getReference(Topico.class, id), data));
+                }));
+            }
+            largada.countDown();
+            for (Future<Object> resposta : respostas) {
+                resposta.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertContadores(id, 2 + simultaneas, INICIO.plusMinutes(10 + simultaneas - 1));
+        // cada transação de resposta sobe a versão uma vez, para o ETag do detalhe mudar
+        assertEquals(versao + simultaneas, versao(id));
+
+        // a remoção tira 1 e a ultimaAtividade volta para a resposta mais recente que sobrou
+        transactionTemplate.execute(status -> {
+            Resposta maisRecente = entityManager.createQuery("select r from Resposta r where r.topico.id = :id "
+                    + "order by r.dataCriacao desc", Resposta.class).setParameter("id", id).setMaxResults(1)
+                    .getSingleResult();
+            entityManager.remove(maisRecente);
+            return null;
+        });
+        assertContadores(id, 1 + simultaneas, INICIO.plusMinutes(10 + simultaneas - 2));
+    }
+
+    @Test
+    public void reparoDeveCorrigirSoOsTopicosComContadoresErrados() {
+        Long[] ids = transactionTemplate.execute(status -> {
+            Curso curso = curso("Reparo");
+            Topico certo = topico(curso);
+            resposta(certo, INICIO.plusMinutes(1));
+            Topico errado = topico(curso);
+            resposta(errado, INICIO.plusMinutes(3));
+            resposta(errado, INICIO.plusMinutes(7));
+            return new Long[]{certo.getId(), errado.getId()};
+        });
+        Long certo = ids[0];
+        Long errado = ids[1];
+        // uma carga direta no banco, que não passou pelo ContadoresDeRespostas
+        jdbcTemplate.update("update topico set quantidade_respostas = 0, ultima_atividade = data_criacao where id = ?", errado);
+        long versaoDoCerto = versao(certo);
+        long versaoDoErrado = versao(errado);
+        Long versaoDaListagem = versaoDaListagem("Reparo");
+
+        assertEquals(1, reparoDeContadoresService.reparar());
+
+        assertContadores(errado, 2, INICIO.plusMinutes(7));
+        assertContadores(certo, 1, INICIO.plusMinutes(1));
+        // so o tópico corrigido muda de versão, e o ETag das listagens e invalidado
+        assertEquals(versaoDoErrado + 1, versao(errado));
+        assertEquals(versaoDoCerto, versao(certo));
+        assertEquals(Long.valueOf(versaoDaListagem + 1), versaoDaListagem("Reparo"));
+
+        // nada mais para corrigir
+        assertEquals(0, reparoDeContadoresService.reparar());
+    }
+
+    private void assertContadores(Long id, int quantidade, LocalDateTime ultimaAtividade) {
+        Map<String, Object> topico = jdbcTemplate.queryForMap(
+                "select quantidade_respostas, ultima_atividade from topico where id = ?", id);
+        assertEquals(quantidade, ((Number) topico.get("quantidade_respostas")).intValue());
+        assertEquals(Timestamp.valueOf(ultimaAtividade), topico.get("ultima_atividade"));
+    }
+
+    private long versao(Long id) {
+        return jdbcTemplate.queryForObject("select versao from topico where id = ?", Long.class, id);
+    }
+
+    private Long versaoDaListagem(String curso) {
+        return jdbcTemplate.queryForObject("select versao_topicos from curso where nome = ?", Long.class, curso);
+    }
+
+    private Curso curso(String nome) {
+        Curso curso = new Curso();
+        curso.setNome(nome);
+        curso.setCategoria("Programacao");
+        entityManager.persist(curso);
+        return curso;
+    }
+
+    private Topico topico(Curso curso) {
+        Topico topico = new Topico("Duvida sobre contadores", "Mensagem", curso);
+        topico.setDataCriacao(INICIO);
+        entityManager.persist(topico);
+        return topico;
+    }
+
+    private Resposta resposta(Topico topico, LocalDateTime data) {
+        Resposta resposta = new Resposta();
+        resposta.setMensagem("Resposta");
+        resposta.setTopico(topico);
+        resposta.setDataCriacao(data);
+        entityManager.persist(resposta);
+        return resposta;
+    }
+}
@@ -0,0 +1,68 @@
+package br.com.alura.forum.service.aovivo;
+
+import org.junit.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/*
+    Os dois jeitos de um assinante sair: a escrita que falha so tira ele do mapa, a fila cheia termina a resposta.
+    O executor roda a escrita na propria thread do teste.
+ */
+public class AssinanteTest {
+
+    private final List<Assinante> removidos = new ArrayList<>();
+
+    @Test
+    public void falhaNaEscritaDeveRemoverOAssinanteSemCompletarAResposta() {
+        EmitterDeTeste emitter = new EmitterDeTeste(true);
+        Assinante assinante = new Assinante("Curso", emitter, 4, removidos::add);
+
+        assertTrue(assinante.enfileirar(SseEmitter.event().comment("heartbeat"), Runnable::run));
+
+        assertEquals(1, removidos.size());
+        assertFalse(emitter.completado);
+    }
+
+    @Test
+    public void filaCheiaDeveCompletarAResposta() {
+        EmitterDeTeste emitter = new EmitterDeTeste(false);
+        Assinante assinante = new Assinante("Curso", emitter, 1, removidos::add);
+
+        // sem executar a escrita, a fila de um evento enche no segundo
+        assertTrue(assinante.enfileirar(SseEmitter.event().comment("primeiro"), tarefa -> { }));
+        assertFalse(assinante.enfileirar(SseEmitter.event().comment("segundo"), tarefa -> { }));
+        assinante.encerrar();
+
+        assertTrue(emitter.completado);
+        assertTrue(removidos.isEmpty());
+    }
+
+    private static class EmitterDeTeste extends SseEmitter {
+
+        private final boolean falhar;
+        private boolean completado;
+
+        EmitterDeTeste(boolean falhar) {
+            this.falhar = falhar;
+        }
+
+        @Override
+        public void send(SseEventBuilder evento) throws IOException {
+            if (falhar) {
+                throw new IOException("conexão fechada pelo cliente");
+            }
+        }
+
+        @Override
+        public synchronized void complete() {
+            completado = true;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package br.com.alura.forum.service.busca;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+    O indice sem o Spring: indexar, remover e buscar não usam o banco, so a reconstrução da subida.
+ */
+public class IndiceDeTopicosTest {
+
+    private final IndiceDeTopicos indice = new IndiceDeTopicos();
+
+    @Test
+    public void termoNoTituloDeveValerMaisQueNaMensagem() {
+        indice.indexar(1L, "Duvida de Java", "O Hibernate aparece so na mensagem");
+        indice.indexar(2L, "Erro no Hibernate", "Mensagem qualquer sobre o problema");
+        indice.indexar(3L, "Outro assunto", "Nada a ver com a busca");
+
+        assertEquals(Arrays.asList(2L, 1L), indice.buscar("hibernate", 0, 10));
+    }
+
+    @Test
+    public void documentoComMaisTermosDaConsultaDeveVirPrimeiro() {
+        indice.indexar(1L, "Hibernate", "Configuração do banco");
+        indice.indexar(2L, "Hibernate com lazy loading", "LazyInitializationException no lazy");
+        indice.indexar(3L, "Spring Boot", "Configuração do lazy");
+
+        // os dois termos aparecem em dois documentos; no empate de idf, o titulo (peso 2) passa a mensagem
+        assertEquals(Arrays.asList(2L, 1L, 3L), indice.buscar("Hibernate lazy", 0, 10));
+        // acento e maiuscula não mudam o termo; no empate o documento mais curto vem primeiro
+        assertEquals(Arrays.asList(1L, 3L), indice.buscar("CONFIGURACAO", 0, 10));
+    }
+
+    @Test
+    public void termoRaroDeveValerMaisQueTermoComum() {
+        for (long id = 1; id <= 8; id++) {
+            indice.indexar(id, "Spring " + id, "Mensagem sobre spring");
+        }
+        indice.indexar(9L, "Flyway", "Migração com flyway");
+        indice.indexar(10L, "Spring e flyway", "Mensagem sobre spring");
+
+        // o 9 tem flyway no titulo e na mensagem
+        assertEquals(Arrays.asList(9L, 10L), indice.buscar("flyway", 0, 10));
+        // spring esta em quase todos e pouco soma: os dois com flyway passam os oito que so tem spring
+        assertEquals(new HashSet<>(Arrays.asList(9L, 10L)), new HashSet<>(indice.buscar("spring flyway", 0, 2)));
+    }
+
+    @Test
+    public void paginasDevemCobrirTodosOsEncontradosSemRepetir() {
+        for (long id = 1; id <= 25; id++) {
+            indice.indexar(id, "Duvida de Java " + id, "Mensagem");
+        }
+
+        List<Long> todos = new ArrayList<>();
+        assertEquals(10, adicionar(todos, indice.buscar("java", 0, 10)));
+        assertEquals(10, adicionar(todos, indice.buscar("java", 1, 10)));
+        assertEquals(5, adicionar(todos, indice.buscar("java", 2, 10)));
+        assertEquals(25, new HashSet<>(todos).size());
+        assertEquals(indice.buscar("java", 0, 25), todos);
+    }
+
+    @Test
+    public void paginaDepoisDoFimDeveVirVaziaSemMontarOHeap() {
+        for (long id = 1; id <= 5; id++) {
+            indice.indexar(id, "Duvida de Java " + id, "Mensagem");
+        }
+
+        assertEquals(Collections.emptyList(), indice.buscar("java", 1, 5));
+        // (pagina + 1) * tamanho passaria do int e o heap teria centenas de milhões de posições
+        assertEquals(Collections.emptyList(), indice.buscar("java", 1_000_000, 100));
+        assertEquals(Collections.emptyList(), indice.buscar("java", Integer.MAX_VALUE, 100));
+        // a busca seguinte não pode ver pontos que sobraram da anterior
+        assertEquals(5, indice.buscar("java", 0, 100).size());
+    }
+
+    @Test
+    public void buscaDepoisDaCompactacaoDeveEncontrarSoOsAtivos() {
+        for (long id = 1; id <= 10; id++) {
+            indice.indexar(id, "Spring " + id, "Mensagem sobre spring");
+        }
+        // 4 de 10 removidos passa do LIMITE_REMOVIDOS (30%) e compacta as listas
+        for (long id = 1; id <= 4; id++) {
+            indice.remover(id);
+        }
+        // alterar um tópico tambem remove o documento antigo
+        indice.indexar(5L, "Kotlin", "Mensagem sobre kotlin");
+
+        Set<Long> encontrados = new HashSet<>(indice.buscar("spring", 0, 100));
+        assertEquals(new HashSet<>(Arrays.asList(6L, 7L, 8L, 9L, 10L)), encontrados);
+        assertEquals(Collections.singletonList(5L), indice.buscar("kotlin", 0, 10));
+
+        indice.indexar(11L, "Spring novo", "Mensagem sobre spring");
+        List<Long> depois = indice.buscar("spring", 0, 100);
+        assertEquals(6, depois.size());
+        assertTrue(depois.contains(11L));
+    }
+
+    private static int adicionar(List<Long> todos, List<Long> pagina) {
+        todos.addAll(pagina);
+        return pagina.size();
+    }
+}